@@ -70,6 +70,11 @@
   [self runTest:@"IsPendingTest"];
 }
 
+- (void)testReportQueuedStatuses
+{
+  [self runTest:@"ReportQueuedStatusesTest"];
+}
+
 - (void)runTest:(NSString *)testName
 {
     [HotLoad clearUpdates];
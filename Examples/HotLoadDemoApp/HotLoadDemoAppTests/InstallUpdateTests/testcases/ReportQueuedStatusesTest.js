@@ -0,0 +1,79 @@
+"use strict";
+
+import React from "react-native";
+import { AppRegistry } from "react-native";
+import HotLoad from "maxleap-hotload-sdk";
+import createTestCaseComponent from "../../utils/createTestCaseComponent";
+import assert from "assert";
+
+const deploymentKey = "testDeploymentKey";
+let queuedReports = [];
+let sentBatches = [];
+let sentReportCount = 0;
+let isRemovingReports = false;
+let wasFetchedWhileRemoving = false;
+let allReportsRemoved;
+
+// Stands in for the native status report queue.
+const mockNativeHotLoad = {
+  notifyApplicationReady: async () => {},
+  getNewStatusReport: async () => null,
+  getStatusReportBatch: async (maxCount) => {
+    wasFetchedWhileRemoving = wasFetchedWhileRemoving || isRemovingReports;
+    return queuedReports.slice(0, maxCount);
+  },
+  removeStatusReports: async (reportIds) => {
+    isRemovingReports = true;
+    await new Promise((resolve) => setTimeout(resolve, 10));
+    queuedReports = queuedReports.filter((queuedReport) => reportIds.indexOf(queuedReport.id) === -1);
+    isRemovingReports = false;
+    if (!queuedReports.length) {
+      allReportsRemoved();
+    }
+  }
+};
+
+function MockAcquisitionSdk(httpRequester, configuration) {
+}
+
+MockAcquisitionSdk.prototype.reportStatusDeployBatch = (deploymentStatuses, callback) => {
+  sentBatches.push(deploymentStatuses);
+  callback(null, null);
+};
+
+MockAcquisitionSdk.prototype.reportStatusDeploy = (deployedPackage, status, previousLabelOrAppVersion, previousDeploymentKey, timings, callback) => {
+  sentReportCount++;
+  callback(null, null);
+};
+
+let ReportQueuedStatusesTest = createTestCaseComponent(
+  "ReportQueuedStatusesTest",
+  "notifyApplicationReady should send the queued status reports in batches and remove each batch once it was delivered",
+  () => {
+    for (let i = 0; i < 12; i++) {
+      queuedReports.push({
+        id: `${deploymentKey}:v${i}`,
+        timestamp: i,
+        report: {
+          package: { deploymentKey, label: `v${i}` },
+          status: "DeploymentSucceeded"
+        }
+      });
+    }
+
+    HotLoad.setUpTestDependencies(MockAcquisitionSdk, { appVersion: "1.5.0", deploymentKey }, mockNativeHotLoad);
+  },
+  async () => {
+    const removed = new Promise((resolve) => { allReportsRemoved = resolve; });
+    await HotLoad.notifyApplicationReady();
+    await removed;
+    assert(!wasFetchedWhileRemoving, "getStatusReportBatch was called before the delivered reports were removed");
+    assert.equal(sentReportCount, 0, "queued status reports should be sent in batches");
+    assert.equal(sentBatches.length, 2, "the 12 queued reports should be sent in 2 requests");
+    assert.equal(sentBatches[0].length, 10);
+    assert.equal(sentBatches[0][0].deployedPackage.label, "v0", "the oldest report should be sent first");
+    assert.equal(sentBatches[1].length, 2);
+  }
+);
+
+AppRegistry.registerComponent("ReportQueuedStatusesTest", () => ReportQueuedStatusesTest);
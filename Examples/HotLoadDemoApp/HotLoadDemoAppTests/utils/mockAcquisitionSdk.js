@@ -18,6 +18,11 @@ function createMockAcquisitionSdk(serverPackage, localPackage, expectedDeploymen
     callback(null, null);
   };
   
+  AcquisitionManager.prototype.reportStatusDeployBatch = (deploymentStatuses, callback) => {
+    // No-op and return success.
+    callback(null, null);
+  };
+  
   AcquisitionManager.prototype.reportStatusDownload = (downloadedPackage, callback) => {
     // No-op and return success.
     callback(null, null);
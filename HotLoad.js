@@ -6,6 +6,9 @@ import { Platform } from "react-native";
 let NativeHotLoad = require("react-native").NativeModules.HotLoad;
 const PackageMixins = require("./package-mixins")(NativeHotLoad);
 
+// The number of queued status reports that are fetched from the native side at a time.
+const STATUS_REPORT_BATCH_SIZE = 10;
+
 async function checkForUpdate(deploymentKey = null) {
   /*
    * Before we ask the server if an update exists, we
@@ -85,6 +88,16 @@ async function checkForUpdate(deploymentKey = null) {
   }
 }
 
+async function getBundlePrewarmStats() {
+  if (NativeHotLoad.getBundlePrewarmStats) {
+    const stats = await NativeHotLoad.getBundlePrewarmStats();
+    return stats || null;
+  } else {
+    log("Bundle prewarming is not supported on this platform.");
+    return null;
+  }
+}
+
 const getConfiguration = (() => {
   let config;
   return async function getConfiguration() {
@@ -108,6 +121,25 @@ async function getCurrentPackage() {
   return localPackage;
 }
 
+async function getExecutorMetrics() {
+  if (NativeHotLoad.getExecutorMetrics) {
+    return await NativeHotLoad.getExecutorMetrics();
+  } else {
+    log("Executor metrics are not supported on this platform.");
+    return null;
+  }
+}
+
+async function getUpdateTimings(packageHash) {
+  if (NativeHotLoad.getUpdateTimings) {
+    const updateTimings = await NativeHotLoad.getUpdateTimings(packageHash);
+    return updateTimings || null;
+  } else {
+    log("Update timings are not supported on this platform.");
+    return null;
+  }
+}
+
 function getPromisifiedSdk(requestFetchAdapter, config) {
   // Use dynamically overridden AcquisitionSdk during tests.
   const sdk = new module.exports.AcquisitionSdk(requestFetchAdapter, config);
@@ -123,9 +155,21 @@ function getPromisifiedSdk(requestFetchAdapter, config) {
     });
   };
 
-  sdk.reportStatusDeploy = (deployedPackage, status, previousLabelOrAppVersion, previousDeploymentKey) => {
+  sdk.reportStatusDeploy = (deployedPackage, status, previousLabelOrAppVersion, previousDeploymentKey, timings = null) => {
+    return new Promise((resolve, reject) => {
+      module.exports.AcquisitionSdk.prototype.reportStatusDeploy.call(sdk, deployedPackage, status, previousLabelOrAppVersion, previousDeploymentKey, timings, (err) => {
+        if (err) {
+          reject(err);
+        } else {
+          resolve();
+        }
+      });
+    });
+  };
+
+  sdk.reportStatusDeployBatch = (deploymentStatuses) => {
     return new Promise((resolve, reject) => {
-      module.exports.AcquisitionSdk.prototype.reportStatusDeploy.call(sdk, deployedPackage, status, previousLabelOrAppVersion, previousDeploymentKey, (err) => {
+      module.exports.AcquisitionSdk.prototype.reportStatusDeployBatch.call(sdk, deploymentStatuses, (err) => {
         if (err) {
           reject(err);
         } else {
@@ -171,25 +215,107 @@ const notifyApplicationReady = (() => {
 async function notifyApplicationReadyInternal() {
   await NativeHotLoad.notifyApplicationReady();
   const statusReport = await NativeHotLoad.getNewStatusReport();
-  if (statusReport) {
+  if (NativeHotLoad.getStatusReportBatch) {
+    // The new report was queued natively, together with any that could not be sent before.
+    reportQueuedStatuses().catch((error) => log(`Unable to report queued statuses: ${error}`));
+  } else if (statusReport) {
     const config = await getConfiguration();
-    const previousLabelOrAppVersion = statusReport.previousLabelOrAppVersion;
-    const previousDeploymentKey = statusReport.previousDeploymentKey || config.deploymentKey;
-    if (statusReport.appVersion) {
-      const sdk = getPromisifiedSdk(requestFetchAdapter, config);
-      sdk.reportStatusDeploy(/* deployedPackage */ null, /* status */ null, previousLabelOrAppVersion, previousDeploymentKey);
-    } else {
-      config.deploymentKey = statusReport.package.deploymentKey;
-      const sdk = getPromisifiedSdk(requestFetchAdapter, config);
-      sdk.reportStatusDeploy(statusReport.package, statusReport.status, previousLabelOrAppVersion, previousDeploymentKey);
+    reportStatus(config, statusReport);
+  }
+}
+
+// Returns the arguments of the reportStatusDeploy call for a status report from the native side.
+function getDeploymentStatus(config, statusReport) {
+  const deploymentStatus = {
+    previousLabelOrAppVersion: statusReport.previousLabelOrAppVersion,
+    previousDeploymentKey: statusReport.previousDeploymentKey || config.deploymentKey
+  };
+
+  if (!statusReport.appVersion) {
+    deploymentStatus.deploymentKey = statusReport.package.deploymentKey;
+    deploymentStatus.deployedPackage = statusReport.package;
+    deploymentStatus.status = statusReport.status;
+    deploymentStatus.timings = statusReport.timings;
+  }
+
+  return deploymentStatus;
+}
+
+function reportStatus(config, statusReport) {
+  const deploymentStatus = getDeploymentStatus(config, statusReport);
+  const sdk = getPromisifiedSdk(requestFetchAdapter, { ...config, deploymentKey: deploymentStatus.deploymentKey || config.deploymentKey });
+  return sdk.reportStatusDeploy(deploymentStatus.deployedPackage || null, deploymentStatus.status || null,
+    deploymentStatus.previousLabelOrAppVersion, deploymentStatus.previousDeploymentKey, deploymentStatus.timings || null);
+}
+
+// Sends the queued status reports, oldest first, one batch per request, and removes the ones that
+// were delivered. The remaining reports stay queued until the next launch if a request fails.
+async function reportQueuedStatuses() {
+  const config = await getConfiguration();
+  let batch;
+  do {
+    batch = await NativeHotLoad.getStatusReportBatch(STATUS_REPORT_BATCH_SIZE);
+    if (!batch.length) {
+      return;
+    }
+
+    const deliveredReportIds = [];
+    let deliveryError = null;
+    try {
+      await sendStatusReports(config, batch, deliveredReportIds);
+    } catch (error) {
+      deliveryError = error;
+    }
+
+    if (deliveredReportIds.length) {
+      try {
+        // Awaited, so that the next batch never includes reports that were already delivered.
+        await NativeHotLoad.removeStatusReports(deliveredReportIds);
+      } catch (error) {
+        throw new Error(`Unable to remove delivered status reports, they will be sent again: ${error}`);
+      }
+    }
+
+    if (deliveryError) {
+      throw deliveryError;
+    }
+  } while (batch.length === STATUS_REPORT_BATCH_SIZE);
+}
+
+// Sends the queued reports in one request, adding their ids to deliveredReportIds. Servers without
+// the batch endpoint get one request per report instead, until one of them fails.
+async function sendStatusReports(config, queuedReports, deliveredReportIds) {
+  try {
+    const sdk = getPromisifiedSdk(requestFetchAdapter, config);
+    await sdk.reportStatusDeployBatch(queuedReports.map((queuedReport) => getDeploymentStatus(config, queuedReport.report)));
+    queuedReports.forEach((queuedReport) => deliveredReportIds.push(queuedReport.id));
+    return;
+  } catch (error) {
+    if (!error || !/^404:/.test(error.message)) {
+      throw error;
     }
   }
+
+  for (const queuedReport of queuedReports) {
+    await reportStatus(config, queuedReport.report);
+    deliveredReportIds.push(queuedReport.id);
+  }
 }
 
 function restartApp(onlyIfUpdateIsPending = false) {
   NativeHotLoad.restartApp(onlyIfUpdateIsPending);
 }
 
+// Limits the download rate of updates while the app is in the foreground, including
+// the download in progress. Only supported on Android.
+function setDownloadBandwidthLimit(bytesPerSecond = 0) {
+  if (NativeHotLoad.setDownloadBandwidthLimit) {
+    NativeHotLoad.setDownloadBandwidthLimit(bytesPerSecond);
+  } else {
+    log("Download bandwidth limits are not supported on this platform.");
+  }
+}
+
 var testConfig;
 
 // This function is only used for tests. Replaces the default SDK, configuration and native bridge
@@ -386,11 +512,15 @@ if (NativeHotLoad) {
     HotLoad = {
         AcquisitionSdk: Sdk,
         checkForUpdate,
+        getBundlePrewarmStats,
         getConfiguration,
         getCurrentPackage,
+        getExecutorMetrics,
+        getUpdateTimings,
         log,
         notifyApplicationReady,
         restartApp,
+        setDownloadBandwidthLimit,
         setUpTestDependencies,
         sync,
         InstallMode: {
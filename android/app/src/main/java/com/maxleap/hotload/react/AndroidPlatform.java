@@ -0,0 +1,78 @@
+package com.maxleap.hotload.react;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+class AndroidPlatform implements HotLoadPlatform {
+
+    // Cleared the first time the file system refuses a hard link, to stop trying for every file.
+    private volatile boolean isLinkingSupported = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+
+    // Files linked this way share their contents, so they must be replaced rather than written to.
+    @Override
+    public boolean linkFile(File sourceFile, File destFile) {
+        if (!isLinkingSupported) {
+            return false;
+        }
+
+        try {
+            Os.link(sourceFile.getAbsolutePath(), destFile.getAbsolutePath());
+            return true;
+        } catch (ErrnoException e) {
+            if (e.errno == OsConstants.EXDEV || e.errno == OsConstants.EPERM || e.errno == OsConstants.ENOTSUP) {
+                HotLoadUtils.log("Hard links are not supported, falling back to copying files.");
+                isLinkingSupported = false;
+            }
+
+            return false;
+        }
+    }
+
+    @Override
+    public void log(String message) {
+        HotLoadUtils.log(message);
+    }
+
+    // Unlike File.renameTo, failures are reported with the reason they happened.
+    @Override
+    public void renameAtomically(File source, File destination) throws IOException {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+            try {
+                Os.rename(source.getAbsolutePath(), destination.getAbsolutePath());
+                return;
+            } catch (ErrnoException e) {
+                throw new IOException("Unable to rename " + source.getAbsolutePath() + " to " +
+                        destination.getAbsolutePath() + ": " + e.getMessage());
+            }
+        }
+
+        if (!source.renameTo(destination)) {
+            throw new IOException("Unable to rename " + source.getAbsolutePath() + " to " + destination.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public void syncDirectoryEntries(File directory) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            // Directories cannot be opened from Java, the files themselves are still synced.
+            return;
+        }
+
+        try {
+            FileDescriptor fd = Os.open(directory.getAbsolutePath(), OsConstants.O_RDONLY, 0);
+            try {
+                Os.fsync(fd);
+            } finally {
+                Os.close(fd);
+            }
+        } catch (ErrnoException e) {
+            HotLoadUtils.log("Unable to sync directory " + directory.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+}
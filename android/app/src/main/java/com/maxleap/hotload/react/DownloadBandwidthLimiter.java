@@ -0,0 +1,74 @@
+package com.maxleap.hotload.react;
+
+import android.os.SystemClock;
+
+// Caps the rate of a download with a token bucket holding up to one second worth of bytes. It
+// sits in front of the download's progress callback, which is called by the downloading threads
+// after every buffer they write, and holds them there until the bytes are paid for. The limit
+// can be changed while the download runs, and is lifted while the app is in the background.
+class DownloadBandwidthLimiter implements DownloadProgressCallback {
+    private DownloadProgressCallback progressCallback;
+    private long bytesPerSecond;
+    private boolean isInBackground;
+
+    private double tokens = 0;
+    private long lastRefillTime = SystemClock.elapsedRealtime();
+    private long lastReceivedBytes = 0;
+
+    public DownloadBandwidthLimiter(long bytesPerSecond, boolean isInBackground, DownloadProgressCallback progressCallback) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.isInBackground = isInBackground;
+        this.progressCallback = progressCallback;
+    }
+
+    // 0 or less removes the limit.
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        refill();
+        this.bytesPerSecond = bytesPerSecond;
+        notifyAll();
+    }
+
+    public synchronized void setInBackground(boolean isInBackground) {
+        refill();
+        this.isInBackground = isInBackground;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized void call(long totalBytes, long receivedBytes) {
+        if (receivedBytes < lastReceivedBytes) {
+            // A new download using the same callback.
+            lastReceivedBytes = 0;
+        }
+
+        refill();
+        tokens -= receivedBytes - lastReceivedBytes;
+        lastReceivedBytes = receivedBytes;
+        try {
+            while (tokens < 0 && isLimited()) {
+                wait(Math.max(1, (long) Math.ceil(-tokens * 1000 / bytesPerSecond)));
+                refill();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        progressCallback.call(totalBytes, receivedBytes);
+    }
+
+    private boolean isLimited() {
+        return bytesPerSecond > 0 && !isInBackground;
+    }
+
+    private void refill() {
+        long now = SystemClock.elapsedRealtime();
+        if (isLimited()) {
+            tokens = Math.min(bytesPerSecond, tokens + (now - lastRefillTime) * bytesPerSecond / 1000.0);
+        } else {
+            // Nothing is owed for what was downloaded without a limit.
+            tokens = 0;
+        }
+
+        lastRefillTime = now;
+    }
+}
@@ -0,0 +1,26 @@
+package com.maxleap.hotload.react;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+// A few direct buffers shared by all downloads. Downloads run one after another, so in practice
+// one buffer (or one per segment of a segmented download) is allocated once and reused, instead
+// of every download allocating its own arrays. Data read from the network goes into the buffer
+// and is written to the file from there, without being copied through intermediate arrays.
+class DownloadBufferPool {
+    private static final int BUFFER_SIZE = 1024 * 64;
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final ArrayDeque<ByteBuffer> buffers = new ArrayDeque<ByteBuffer>();
+
+    public static synchronized ByteBuffer acquire() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    public static synchronized void release(ByteBuffer buffer) {
+        buffer.clear();
+        if (buffers.size() < MAX_POOLED_BUFFERS) {
+            buffers.push(buffer);
+        }
+    }
+}
@@ -6,10 +6,14 @@ import com.facebook.react.bridge.WritableNativeMap;
 class DownloadProgress {
     private long totalBytes;
     private long receivedBytes;
+    private double bytesPerSecond;
+    private double estimatedSecondsRemaining;
 
-    public DownloadProgress (long totalBytes, long receivedBytes){
+    public DownloadProgress (long totalBytes, long receivedBytes, double bytesPerSecond, double estimatedSecondsRemaining){
         this.totalBytes = totalBytes;
         this.receivedBytes = receivedBytes;
+        this.bytesPerSecond = bytesPerSecond;
+        this.estimatedSecondsRemaining = estimatedSecondsRemaining;
     }
 
     public WritableMap createWritableMap() {
@@ -21,6 +25,10 @@ class DownloadProgress {
             map.putDouble("totalBytes", totalBytes);
             map.putDouble("receivedBytes", receivedBytes);
         }
+        map.putDouble("bytesPerSecond", bytesPerSecond);
+        if (estimatedSecondsRemaining >= 0) {
+            map.putDouble("estimatedSecondsRemaining", estimatedSecondsRemaining);
+        }
         return map;
     }
 }
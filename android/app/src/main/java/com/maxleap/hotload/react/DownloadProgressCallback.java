@@ -1,5 +1,6 @@
 package com.maxleap.hotload.react;
 
 interface DownloadProgressCallback {
-    void call(DownloadProgress downloadProgress);
+    // Called for every buffer read, so implementations should not do much work per call.
+    void call(long totalBytes, long receivedBytes);
 }
@@ -0,0 +1,62 @@
+package com.maxleap.hotload.react;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Counts the bytes read from a download stream and notifies the client of the progress.
+class DownloadProgressInputStream extends FilterInputStream {
+    private long totalBytes;
+    private long receivedBytes;
+    private DownloadProgressCallback progressCallback;
+
+    public DownloadProgressInputStream(InputStream in, long totalBytes, DownloadProgressCallback progressCallback) {
+        super(in);
+        this.totalBytes = totalBytes;
+        this.progressCallback = progressCallback;
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value >= 0) {
+            onBytesRead(1);
+        }
+
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        int numBytesRead = super.read(buffer, offset, count);
+        if (numBytesRead > 0) {
+            onBytesRead(numBytesRead);
+        }
+
+        return numBytesRead;
+    }
+
+    @Override
+    public long skip(long count) throws IOException {
+        long numBytesSkipped = super.skip(count);
+        if (numBytesSkipped > 0) {
+            onBytesRead(numBytesSkipped);
+        }
+
+        return numBytesSkipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void onBytesRead(long numBytesRead) {
+        receivedBytes += numBytesRead;
+        progressCallback.call(totalBytes, receivedBytes);
+    }
+}
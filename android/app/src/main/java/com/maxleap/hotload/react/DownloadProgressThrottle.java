@@ -0,0 +1,56 @@
+package com.maxleap.hotload.react;
+
+import android.os.SystemClock;
+
+// Coalesces the progress reported for every buffer read into at most maxEventsPerSecond events,
+// each at least minPercentStep percent further along than the previous one, and adds the average
+// download speed and the estimated time remaining to them. The first and the final progress of a
+// download are always emitted.
+abstract class DownloadProgressThrottle implements DownloadProgressCallback {
+    private long minIntervalMillis;
+    private int minPercentStep;
+
+    private long startTime;
+    private long startReceivedBytes = -1;
+    private long lastEmitTime;
+    private long lastEmittedBytes;
+
+    public DownloadProgressThrottle(int maxEventsPerSecond, int minPercentStep) {
+        this.minIntervalMillis = maxEventsPerSecond > 0 ? 1000 / maxEventsPerSecond : 0;
+        this.minPercentStep = minPercentStep;
+    }
+
+    protected abstract void emit(DownloadProgress downloadProgress);
+
+    @Override
+    public void call(long totalBytes, long receivedBytes) {
+        long now = SystemClock.elapsedRealtime();
+        boolean isFinished = totalBytes > 0 && receivedBytes >= totalBytes;
+        if (startReceivedBytes < 0 || receivedBytes < lastEmittedBytes) {
+            // The first progress of a download, or of a new one using the same callback.
+            startTime = now;
+            startReceivedBytes = receivedBytes;
+        } else if (!isFinished) {
+            if (now - lastEmitTime < minIntervalMillis) {
+                return;
+            }
+
+            if (minPercentStep > 0 && totalBytes > 0 &&
+                    (receivedBytes - lastEmittedBytes) * 100 < totalBytes * minPercentStep) {
+                return;
+            }
+        }
+
+        lastEmitTime = now;
+        lastEmittedBytes = receivedBytes;
+
+        long elapsedMillis = now - startTime;
+        double bytesPerSecond = elapsedMillis > 0 ? (receivedBytes - startReceivedBytes) * 1000.0 / elapsedMillis : 0;
+        double estimatedSecondsRemaining = -1;
+        if (totalBytes > 0 && bytesPerSecond > 0) {
+            estimatedSecondsRemaining = Math.max(0, totalBytes - receivedBytes) / bytesPerSecond;
+        }
+
+        emit(new DownloadProgress(totalBytes, receivedBytes, bytesPerSecond, estimatedSecondsRemaining));
+    }
+}
@@ -3,26 +3,21 @@ package com.maxleap.hotload.react;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
-import android.os.AsyncTask;
+import android.os.Process;
 import android.provider.Settings;
 import com.facebook.react.ReactPackage;
 import com.facebook.react.bridge.*;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.uimanager.ViewManager;
 import com.facebook.soloader.SoLoader;
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 public class HotLoad {
     private static boolean needToReportRollback = false;
@@ -37,21 +32,30 @@ public class HotLoad {
     private final String BINARY_MODIFIED_TIME_KEY = "binaryModifiedTime";
     private final String HOT_LOAD_PREFERENCES = "HotLoad";
     private final String DOWNLOAD_PROGRESS_EVENT_NAME = "HotLoadDownloadProgress";
-    private final String FAILED_UPDATES_KEY = "CODE_PUSH_FAILED_UPDATES";
     private final String PACKAGE_HASH_KEY = "packageHash";
     private final String PENDING_UPDATE_HASH_KEY = "hash";
     private final String PENDING_UPDATE_IS_LOADING_KEY = "isLoading";
     private final String PENDING_UPDATE_KEY = "HOT_LOAD_PENDING_UPDATE";
-    private final String RESOURCES_BUNDLE = "resources.arsc";
+    private final String STATUS_REPORT_QUEUE_FILE_NAME = "HotLoadStatusReports.json";
 
     // This needs to be kept in sync with https://github.com/facebook/react-native/blob/master/ReactAndroid/src/main/java/com/facebook/react/devsupport/DevSupportManager.java#L78
     private final String REACT_DEV_BUNDLE_CACHE_FILE_NAME = "ReactNativeDevBundle.js";
 
     // Helper classes.
+    private HotLoadBinaryIdentity hotLoadBinaryIdentity;
+    private HotLoadBundlePrewarmer hotLoadBundlePrewarmer = new HotLoadBundlePrewarmer();
+    private HotLoadFailedUpdates hotLoadFailedUpdates;
     private HotLoadNativeModule hotLoadNativeModule;
     private HotLoadPackage hotLoadPackage;
     private HotLoadReactPackage hotLoadReactPackage;
+    private HotLoadStateJournal hotLoadStateJournal;
     private HotLoadTelemetryManager hotLoadTelemetryManager;
+    private HotLoadUpdateTimings hotLoadUpdateTimings;
+
+    // Downloads and installs run on the I/O lane, so that cheap metadata queries never wait
+    // behind them.
+    private HotLoadExecutor ioExecutor;
+    private HotLoadExecutor metadataExecutor;
 
     // Config properties.
     private String appVersion;
@@ -62,6 +66,12 @@ public class HotLoad {
     private Activity mainActivity;
     private Context applicationContext;
     private final boolean isDebugMode;
+    private volatile DownloadBandwidthLimiter activeBandwidthLimiter;
+    private boolean bundlePrewarmEnabled = false;
+    private long downloadBandwidthLimit = 0;
+    private int downloadProgressPercentStep = 0;
+    private volatile boolean isInBackground = false;
+    private int maxDownloadProgressEventsPerSecond = 10;
 
     public HotLoad(String deploymentKey, Activity mainActivity) {
         this(deploymentKey, mainActivity, false);
@@ -69,9 +79,18 @@ public class HotLoad {
 
     public HotLoad(String deploymentKey, Activity mainActivity, boolean isDebugMode) {
         SoLoader.init(mainActivity, false);
+        FileUtils.setPlatform(new AndroidPlatform());
         this.applicationContext = mainActivity.getApplicationContext();
         this.hotLoadPackage = new HotLoadPackage(mainActivity.getFilesDir().getAbsolutePath());
-        this.hotLoadTelemetryManager = new HotLoadTelemetryManager(this.applicationContext, HOT_LOAD_PREFERENCES);
+        this.hotLoadStateJournal = new HotLoadStateJournal(this.applicationContext, HOT_LOAD_PREFERENCES);
+        this.hotLoadStateJournal.importPreference(PENDING_UPDATE_KEY);
+        this.hotLoadTelemetryManager = new HotLoadTelemetryManager(this.hotLoadStateJournal,
+                new HotLoadStatusReportQueue(new File(mainActivity.getFilesDir(), STATUS_REPORT_QUEUE_FILE_NAME).getAbsolutePath()));
+        this.hotLoadBinaryIdentity = new HotLoadBinaryIdentity(this.applicationContext, HOT_LOAD_PREFERENCES);
+        this.hotLoadFailedUpdates = new HotLoadFailedUpdates(this.hotLoadStateJournal);
+        this.hotLoadUpdateTimings = new HotLoadUpdateTimings(this.hotLoadStateJournal);
+        this.ioExecutor = new HotLoadExecutor("HotLoadIO", Process.THREAD_PRIORITY_BACKGROUND);
+        this.metadataExecutor = new HotLoadExecutor("HotLoadMetadata", Process.THREAD_PRIORITY_DEFAULT);
         this.deploymentKey = deploymentKey;
         this.isDebugMode = isDebugMode;
         this.mainActivity = mainActivity;
@@ -95,32 +114,17 @@ public class HotLoad {
     }
 
     private long getBinaryResourcesModifiedTime() {
-        ZipFile applicationFile = null;
-        try {
-            ApplicationInfo ai = applicationContext.getPackageManager().getApplicationInfo(applicationContext.getPackageName(), 0);
-            applicationFile = new ZipFile(ai.sourceDir);
-            ZipEntry classesDexEntry = applicationFile.getEntry(RESOURCES_BUNDLE);
-            return classesDexEntry.getTime();
-        } catch (PackageManager.NameNotFoundException | IOException e) {
-            throw new HotLoadUnknownException("Error in getting file information about compiled resources", e);
-        } finally {
-            if (applicationFile != null) {
-                try {
-                    applicationFile.close();
-                } catch (IOException e) {
-                    throw new HotLoadUnknownException("Error in closing application file.", e);
-                }
-            }
-        }
+        return hotLoadBinaryIdentity.getResourcesModifiedTime();
     }
 
     public String getBundleUrl(String assetsBundleFileName) {
         this.assetsBundleFileName = assetsBundleFileName;
         String binaryJsBundleUrl = ASSETS_BUNDLE_PREFIX + assetsBundleFileName;
-        long binaryResourcesModifiedTime = getBinaryResourcesModifiedTime();
 
         try {
-            String packageFilePath = hotLoadPackage.getCurrentPackageBundlePath();
+            // A single small read, instead of the status file and the package metadata.
+            HotLoadBootRecord bootRecord = hotLoadPackage.getBootRecord();
+            String packageFilePath = bootRecord.getBundlePath();
             if (packageFilePath == null) {
                 // There has not been any downloaded updates.
                 HotLoadUtils.logBundleUrl(binaryJsBundleUrl);
@@ -128,19 +132,22 @@ public class HotLoad {
                 return binaryJsBundleUrl;
             }
 
-            ReadableMap packageMetadata = hotLoadPackage.getCurrentPackage();
             Long binaryModifiedDateDuringPackageInstall = null;
-            String binaryModifiedDateDuringPackageInstallString = HotLoadUtils.tryGetString(packageMetadata, BINARY_MODIFIED_TIME_KEY);
+            String binaryModifiedDateDuringPackageInstallString = bootRecord.getBinaryModifiedTime();
             if (binaryModifiedDateDuringPackageInstallString != null) {
                 binaryModifiedDateDuringPackageInstall = Long.parseLong(binaryModifiedDateDuringPackageInstallString);
             }
 
-            String packageAppVersion = HotLoadUtils.tryGetString(packageMetadata, "appVersion");
+            String packageAppVersion = bootRecord.getAppVersion();
             if (binaryModifiedDateDuringPackageInstall != null &&
-                    binaryModifiedDateDuringPackageInstall == binaryResourcesModifiedTime &&
+                    binaryModifiedDateDuringPackageInstall == getBinaryResourcesModifiedTime() &&
                     (isUsingTestConfiguration() || this.appVersion.equals(packageAppVersion))) {
                 HotLoadUtils.logBundleUrl(packageFilePath);
                 isRunningBinaryVersion = false;
+                if (bundlePrewarmEnabled) {
+                    hotLoadBundlePrewarmer.prewarm(packageFilePath);
+                }
+
                 return packageFilePath;
             } else {
                 // The binary version is newer.
@@ -158,26 +165,8 @@ public class HotLoad {
         }
     }
 
-    private JSONArray getFailedUpdates() {
-        SharedPreferences settings = applicationContext.getSharedPreferences(HOT_LOAD_PREFERENCES, 0);
-        String failedUpdatesString = settings.getString(FAILED_UPDATES_KEY, null);
-        if (failedUpdatesString == null) {
-            return new JSONArray();
-        }
-
-        try {
-            return new JSONArray(failedUpdatesString);
-        } catch (JSONException e) {
-            // Unrecognized data format, clear and replace with expected format.
-            JSONArray emptyArray = new JSONArray();
-            settings.edit().putString(FAILED_UPDATES_KEY, emptyArray.toString()).commit();
-            return emptyArray;
-        }
-    }
-
     private JSONObject getPendingUpdate() {
-        SharedPreferences settings = applicationContext.getSharedPreferences(HOT_LOAD_PREFERENCES, 0);
-        String pendingUpdateString = settings.getString(PENDING_UPDATE_KEY, null);
+        String pendingUpdateString = hotLoadStateJournal.getString(PENDING_UPDATE_KEY);
         if (pendingUpdateString == null) {
             return null;
         }
@@ -187,7 +176,7 @@ public class HotLoad {
         } catch (JSONException e) {
             // Should not happen.
             HotLoadUtils.log("Unable to parse pending update metadata " + pendingUpdateString +
-                    " stored in SharedPreferences");
+                    " stored in the update state journal");
             return null;
         }
     }
@@ -223,28 +212,13 @@ public class HotLoad {
                 }
             } catch (JSONException e) {
                 // Should not happen.
-                throw new HotLoadUnknownException("Unable to read pending update metadata stored in SharedPreferences", e);
+                throw new HotLoadUnknownException("Unable to read pending update metadata stored in the update state journal", e);
             }
         }
     }
 
     private boolean isFailedHash(String packageHash) {
-        JSONArray failedUpdates = getFailedUpdates();
-        if (packageHash != null) {
-            for (int i = 0; i < failedUpdates.length(); i++) {
-                try {
-                    JSONObject failedPackage = failedUpdates.getJSONObject(i);
-                    String failedPackageHash = failedPackage.getString(PACKAGE_HASH_KEY);
-                    if (packageHash.equals(failedPackageHash)) {
-                        return true;
-                    }
-                } catch (JSONException e) {
-                    throw new HotLoadUnknownException("Unable to read failedUpdates data stored in SharedPreferences.", e);
-                }
-            }
-        }
-
-        return false;
+        return hotLoadFailedUpdates.isFailedHash(packageHash);
     }
 
     private boolean isPendingUpdate(String packageHash) {
@@ -260,50 +234,33 @@ public class HotLoad {
     }
 
     private void removeFailedUpdates() {
-        SharedPreferences settings = applicationContext.getSharedPreferences(HOT_LOAD_PREFERENCES, 0);
-        settings.edit().remove(FAILED_UPDATES_KEY).commit();
+        hotLoadFailedUpdates.clear();
     }
 
     private void removePendingUpdate() {
-        SharedPreferences settings = applicationContext.getSharedPreferences(HOT_LOAD_PREFERENCES, 0);
-        settings.edit().remove(PENDING_UPDATE_KEY).commit();
+        hotLoadStateJournal.remove(PENDING_UPDATE_KEY);
     }
 
     private void rollbackPackage() {
-        WritableMap failedPackage = hotLoadPackage.getCurrentPackage();
-        saveFailedUpdate(failedPackage);
+        PackageMetadata failedPackage = hotLoadPackage.getCurrentPackage();
+        if (failedPackage != null) {
+            saveFailedUpdate(failedPackage);
+        }
+
         hotLoadPackage.rollbackPackage();
         removePendingUpdate();
     }
 
-    private void saveFailedUpdate(ReadableMap failedPackage) {
-        SharedPreferences settings = applicationContext.getSharedPreferences(HOT_LOAD_PREFERENCES, 0);
-        String failedUpdatesString = settings.getString(FAILED_UPDATES_KEY, null);
-        JSONArray failedUpdates;
-        if (failedUpdatesString == null) {
-            failedUpdates = new JSONArray();
-        } else {
-            try {
-                failedUpdates = new JSONArray(failedUpdatesString);
-            } catch (JSONException e) {
-                // Should not happen.
-                throw new HotLoadMalformedDataException("Unable to parse failed updates information " +
-                        failedUpdatesString + " stored in SharedPreferences", e);
-            }
-        }
-
-        JSONObject failedPackageJSON = HotLoadUtils.convertReadableToJsonObject(failedPackage);
-        failedUpdates.put(failedPackageJSON);
-        settings.edit().putString(FAILED_UPDATES_KEY, failedUpdates.toString()).commit();
+    private void saveFailedUpdate(PackageMetadata failedPackage) {
+        hotLoadFailedUpdates.add(failedPackage);
     }
 
     private void savePendingUpdate(String packageHash, boolean isLoading) {
-        SharedPreferences settings = applicationContext.getSharedPreferences(HOT_LOAD_PREFERENCES, 0);
         JSONObject pendingUpdate = new JSONObject();
         try {
             pendingUpdate.put(PENDING_UPDATE_HASH_KEY, packageHash);
             pendingUpdate.put(PENDING_UPDATE_IS_LOADING_KEY, isLoading);
-            settings.edit().putString(PENDING_UPDATE_KEY, pendingUpdate.toString()).commit();
+            hotLoadStateJournal.putString(PENDING_UPDATE_KEY, pendingUpdate.toString());
         } catch (JSONException e) {
             // Should not happen.
             throw new HotLoadUnknownException("Unable to save pending update.", e);
@@ -319,6 +276,67 @@ public class HotLoad {
         testConfigurationFlag = shouldUseTestConfiguration;
     }
 
+    // When enabled, the files of installed packages are stored once per distinct content and shared
+    // between packages through hard links. Requires Android 5.0 or later, and is ignored otherwise.
+    public void setBlobStoreEnabled(boolean blobStoreEnabled) {
+        hotLoadPackage.setBlobStoreEnabled(blobStoreEnabled);
+    }
+
+    // Number of threads used to extract downloaded zip packages, e.g.
+    // Runtime.getRuntime().availableProcessors(). Defaults to 1, which extracts sequentially.
+    public void setExtractionThreadCount(int extractionThreadCount) {
+        hotLoadPackage.setExtractionThreadCount(extractionThreadCount);
+    }
+
+    // Number of byte ranges of a package (of at least 4 MB) downloaded in parallel, which helps on
+    // high latency links. Defaults to 1. Packages from servers that do not support range requests,
+    // resumed downloads and streaming extraction use a single stream.
+    public void setSegmentedDownloadCount(int segmentedDownloadCount) {
+        hotLoadPackage.setSegmentedDownloadCount(segmentedDownloadCount);
+    }
+
+    // When enabled, zip packages are extracted as they are downloaded instead of being saved and
+    // unzipped afterwards. Such downloads cannot be resumed if they are interrupted.
+    public void setStreamingExtractionEnabled(boolean streamingExtractionEnabled) {
+        hotLoadPackage.setStreamingExtractionEnabled(streamingExtractionEnabled);
+    }
+
+    // When enabled, getBundleUrl starts reading the bundle of an update into the page cache on a
+    // background thread, so that React does not read it cold while the app starts. Must be set
+    // before getBundleUrl is called.
+    public void setBundlePrewarmEnabled(boolean bundlePrewarmEnabled) {
+        this.bundlePrewarmEnabled = bundlePrewarmEnabled;
+    }
+
+    // Replaces the HttpURLConnection based transport used to download updates, e.g. with one that
+    // uses the app's own OkHttp client.
+    public void setTransport(HotLoadTransport transport) {
+        hotLoadPackage.setTransport(transport);
+    }
+
+    // Download progress events are coalesced to at most this many per second. Defaults to 10,
+    // 0 emits an event for every buffer read.
+    public void setMaxDownloadProgressEventsPerSecond(int maxDownloadProgressEventsPerSecond) {
+        this.maxDownloadProgressEventsPerSecond = maxDownloadProgressEventsPerSecond;
+    }
+
+    // When set, download progress events are only emitted once the download has advanced by at
+    // least this many percent of its size since the previous event. Defaults to 0.
+    public void setDownloadProgressPercentStep(int downloadProgressPercentStep) {
+        this.downloadProgressPercentStep = downloadProgressPercentStep;
+    }
+
+    // Limits the download rate of updates to the given number of bytes per second while the app is
+    // in the foreground, including the download in progress. Downloads can also set their own
+    // limit. Defaults to 0, which means no limit.
+    public void setDownloadBandwidthLimit(long bytesPerSecond) {
+        this.downloadBandwidthLimit = bytesPerSecond;
+        DownloadBandwidthLimiter bandwidthLimiter = activeBandwidthLimiter;
+        if (bandwidthLimiter != null) {
+            bandwidthLimiter.setBytesPerSecond(bytesPerSecond);
+        }
+    }
+
     public void clearUpdates() {
         hotLoadPackage.clearUpdates();
         removePendingUpdate();
@@ -336,38 +354,75 @@ public class HotLoad {
         }
 
         @ReactMethod
-        public void downloadUpdate(final ReadableMap updatePackage, final Promise promise) {
-            AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+        public void downloadUpdate(final ReadableMap updatePackage, final ReadableMap downloadOptions, final Promise promise) {
+            final boolean notifyProgress = downloadOptions.hasKey("notifyProgress") && downloadOptions.getBoolean("notifyProgress");
+            final long bytesPerSecond = downloadOptions.hasKey("maxBytesPerSecond") && !downloadOptions.isNull("maxBytesPerSecond")
+                    ? (long) downloadOptions.getDouble("maxBytesPerSecond")
+                    : downloadBandwidthLimit;
+            // The bridge map is only read once, everything below works on the metadata model.
+            final PackageMetadata packageMetadata = PackageMetadata.fromReadableMap(updatePackage);
+            ioExecutor.execute(new Runnable() {
                 @Override
-                protected Void doInBackground(Void... params) {
+                public void run() {
+                    UpdateTimings updateTimings = new UpdateTimings(packageMetadata.getPackageHash());
                     try {
-                        WritableMap mutableUpdatePackage = HotLoadUtils.convertReadableMapToWritableMap(updatePackage);
-                        mutableUpdatePackage.putString(BINARY_MODIFIED_TIME_KEY, "" + getBinaryResourcesModifiedTime());
-                        hotLoadPackage.downloadPackage(mutableUpdatePackage, HotLoad.this.assetsBundleFileName, new DownloadProgressCallback() {
-                            @Override
-                            public void call(DownloadProgress downloadProgress) {
-                                getReactApplicationContext()
-                                        .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                                        .emit(DOWNLOAD_PROGRESS_EVENT_NAME, downloadProgress.createWritableMap());
-                            }
-                        });
+                        PackageMetadata updatePackageMetadata = packageMetadata.withString(BINARY_MODIFIED_TIME_KEY, "" + getBinaryResourcesModifiedTime());
+                        DownloadProgressCallback progressCallback;
+                        if (notifyProgress) {
+                            progressCallback = new DownloadProgressThrottle(maxDownloadProgressEventsPerSecond, downloadProgressPercentStep) {
+                                @Override
+                                protected void emit(DownloadProgress downloadProgress) {
+                                    getReactApplicationContext()
+                                            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                                            .emit(DOWNLOAD_PROGRESS_EVENT_NAME, downloadProgress.createWritableMap());
+                                }
+                            };
+                        } else {
+                            // Nothing is listening to the progress on the JS side.
+                            progressCallback = new DownloadProgressCallback() {
+                                @Override
+                                public void call(long totalBytes, long receivedBytes) {
+                                }
+                            };
+                        }
+
+                        DownloadBandwidthLimiter bandwidthLimiter = new DownloadBandwidthLimiter(bytesPerSecond, isInBackground, progressCallback);
+                        activeBandwidthLimiter = bandwidthLimiter;
+                        PackageMetadata newPackage;
+                        try {
+                            newPackage = hotLoadPackage.downloadPackage(updatePackageMetadata, HotLoad.this.assetsBundleFileName, bandwidthLimiter, updateTimings);
+                        } finally {
+                            activeBandwidthLimiter = null;
+                        }
 
-                        WritableMap newPackage = hotLoadPackage.getPackage(HotLoadUtils.tryGetString(updatePackage, PACKAGE_HASH_KEY));
-                        promise.resolve(newPackage);
+                        // Only the timings of a download that can be installed are kept, failed
+                        // ones would just push them out of the saved timings.
+                        if (updateTimings.getPackageHash() != null) {
+                            hotLoadUpdateTimings.save(updateTimings);
+                        }
+
+                        promise.resolve(newPackage.toWritableMap());
                     } catch (IOException e) {
                         e.printStackTrace();
                         promise.reject(e);
                     } catch (HotLoadInvalidUpdateException e) {
                         e.printStackTrace();
-                        saveFailedUpdate(updatePackage);
+                        saveFailedUpdate(packageMetadata);
                         promise.reject(e);
                     }
-
-                    return null;
                 }
-            };
+            });
+        }
 
-            asyncTask.execute();
+        @ReactMethod
+        public void setDownloadBandwidthLimit(double bytesPerSecond) {
+            HotLoad.this.setDownloadBandwidthLimit((long) bytesPerSecond);
+        }
+
+        @ReactMethod
+        public void getBundlePrewarmStats(Promise promise) {
+            WritableMap stats = hotLoadBundlePrewarmer.getStats();
+            promise.resolve(stats != null ? stats : "");
         }
 
         @ReactMethod
@@ -380,7 +435,7 @@ public class HotLoad {
             configMap.putString("clientUniqueId",
                     Settings.Secure.getString(mainActivity.getContentResolver(),
                             android.provider.Settings.Secure.ANDROID_ID));
-            String binaryHash = HotLoadUpdateUtils.getHashForBinaryContents(mainActivity, isDebugMode);
+            String binaryHash = hotLoadBinaryIdentity.getContentsHash(mainActivity, isDebugMode);
             if (binaryHash != null) {
                 // binaryHash will be null if the React Native assets were not bundled into the APK
                 // (e.g. in Debug builds)
@@ -390,96 +445,126 @@ public class HotLoad {
             promise.resolve(configMap);
         }
 
+        @ReactMethod
+        public void getExecutorMetrics(Promise promise) {
+            WritableNativeMap metricsMap = new WritableNativeMap();
+            metricsMap.putMap("io", ioExecutor.getMetrics());
+            metricsMap.putMap("metadata", metadataExecutor.getMetrics());
+            promise.resolve(metricsMap);
+        }
+
         @ReactMethod
         public void getCurrentPackage(final Promise promise) {
-            AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+            metadataExecutor.execute(new Runnable() {
                 @Override
-                protected Void doInBackground(Void... params) {
-                    WritableMap currentPackage = hotLoadPackage.getCurrentPackage();
-                    if (currentPackage == null) {
+                public void run() {
+                    PackageMetadata currentPackageMetadata = hotLoadPackage.getCurrentPackage();
+                    if (currentPackageMetadata == null) {
                         promise.resolve("");
-                        return null;
+                        return;
                     }
 
+                    WritableMap currentPackage = currentPackageMetadata.toWritableMap();
+
                     if (isRunningBinaryVersion) {
                         currentPackage.putBoolean("_isDebugOnly", true);
                     }
 
                     Boolean isPendingUpdate = false;
 
-                    if (currentPackage.hasKey(PACKAGE_HASH_KEY)) {
-                        String currentHash = currentPackage.getString(PACKAGE_HASH_KEY);
+                    String currentHash = currentPackageMetadata.getPackageHash();
+                    if (currentHash != null) {
                         isPendingUpdate = HotLoad.this.isPendingUpdate(currentHash);
                     }
 
                     currentPackage.putBoolean("isPending", isPendingUpdate);
                     promise.resolve(currentPackage);
-                    return null;
                 }
-            };
-
-            asyncTask.execute();
+            });
         }
 
         @ReactMethod
         public void getNewStatusReport(final Promise promise) {
 
-            AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+            metadataExecutor.execute(new Runnable() {
                 @Override
-                protected Void doInBackground(Void... params) {
+                public void run() {
                     if (needToReportRollback) {
                         needToReportRollback = false;
-                        JSONArray failedUpdates = getFailedUpdates();
-                        if (failedUpdates != null && failedUpdates.length() > 0) {
-                            try {
-                                JSONObject lastFailedPackageJSON = failedUpdates.getJSONObject(failedUpdates.length() - 1);
-                                WritableMap lastFailedPackage = HotLoadUtils.convertJsonObjectToWritable(lastFailedPackageJSON);
-                                WritableMap failedStatusReport = hotLoadTelemetryManager.getRollbackReport(lastFailedPackage);
-                                if (failedStatusReport != null) {
-                                    promise.resolve(failedStatusReport);
-                                    return null;
-                                }
-                            } catch (JSONException e) {
-                                throw new HotLoadUnknownException("Unable to read failed updates information stored in SharedPreferences.", e);
+                        PackageMetadata lastFailedPackage = hotLoadFailedUpdates.getLastFailedPackage();
+                        if (lastFailedPackage != null) {
+                            WritableMap failedStatusReport = hotLoadTelemetryManager.getRollbackReport(lastFailedPackage,
+                                    hotLoadUpdateTimings.get(lastFailedPackage.getPackageHash()));
+                            if (failedStatusReport != null) {
+                                promise.resolve(failedStatusReport);
+                                return;
                             }
                         }
                     } else if (didUpdate) {
-                        WritableMap currentPackage = hotLoadPackage.getCurrentPackage();
+                        PackageMetadata currentPackage = hotLoadPackage.getCurrentPackage();
                         if (currentPackage != null) {
-                            WritableMap newPackageStatusReport = hotLoadTelemetryManager.getUpdateReport(currentPackage);
+                            WritableMap newPackageStatusReport = hotLoadTelemetryManager.getUpdateReport(currentPackage,
+                                    hotLoadUpdateTimings.get(currentPackage.getPackageHash()));
                             if (newPackageStatusReport != null) {
                                 promise.resolve(newPackageStatusReport);
-                                return null;
+                                return;
                             }
                         }
                     } else if (isRunningBinaryVersion) {
                         WritableMap newAppVersionStatusReport = hotLoadTelemetryManager.getBinaryUpdateReport(appVersion);
                         if (newAppVersionStatusReport != null) {
                             promise.resolve(newAppVersionStatusReport);
-                            return null;
+                            return;
                         }
                     }
 
                     promise.resolve("");
-                    return null;
                 }
-            };
+            });
+        }
+
+        @ReactMethod
+        public void getStatusReportBatch(final int maxCount, final Promise promise) {
+            metadataExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    promise.resolve(hotLoadTelemetryManager.getQueuedReports(maxCount));
+                }
+            });
+        }
 
-            asyncTask.execute();
+        @ReactMethod
+        public void getUpdateTimings(final String packageHash, final Promise promise) {
+            metadataExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    UpdateTimings updateTimings = hotLoadUpdateTimings.get(packageHash);
+                    promise.resolve(updateTimings == null ? "" : updateTimings.toWritableMap());
+                }
+            });
         }
 
         @ReactMethod
         public void installUpdate(final ReadableMap updatePackage, final int installMode, final int minimumBackgroundDuration, final Promise promise) {
-            AsyncTask<Void, Void, Void> asyncTask = new AsyncTask<Void, Void, Void>() {
+            ioExecutor.execute(new Runnable() {
                 @Override
-                protected Void doInBackground(Void... params) {
+                public void run() {
+                    long installStartTime = System.nanoTime();
                     hotLoadPackage.installPackage(updatePackage, isPendingUpdate(null));
 
                     String pendingHash = HotLoadUtils.tryGetString(updatePackage, PACKAGE_HASH_KEY);
                     if (pendingHash == null) {
                         throw new HotLoadUnknownException("Update package to be installed has no hash.");
                     } else {
+                        UpdateTimings updateTimings = hotLoadUpdateTimings.get(pendingHash);
+                        if (updateTimings == null) {
+                            updateTimings = new UpdateTimings(pendingHash);
+                        }
+
+                        updateTimings.record("install", installStartTime, -1, -1);
+                        hotLoadUpdateTimings.save(updateTimings);
                         savePendingUpdate(pendingHash, /* isLoading */false);
+                        indexPackageInBackground(pendingHash);
                     }
 
                     if (installMode == HotLoadInstallMode.ON_NEXT_RESUME.getValue()) {
@@ -520,12 +605,8 @@ public class HotLoad {
                     }
 
                     promise.resolve("");
-
-                    return null;
                 }
-            };
-
-            asyncTask.execute();
+            });
         }
 
         @ReactMethod
@@ -546,6 +627,42 @@ public class HotLoad {
         public void notifyApplicationReady(Promise promise) {
             removePendingUpdate();
             promise.resolve("");
+
+            // Covers packages installed by an earlier version and indexing cut short by the app
+            // being closed.
+            String currentPackageHash = hotLoadPackage.getCurrentPackageHash();
+            if (currentPackageHash != null) {
+                indexPackageInBackground(currentPackageHash);
+            }
+        }
+
+        // Runs after the task that scheduled it, so the promise it resolves is not held up, and on
+        // the I/O executor, so a download never reads the package while it is being indexed.
+        private void indexPackageInBackground(final String packageHash) {
+            ioExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long indexStartTime = System.nanoTime();
+                    if (hotLoadPackage.indexPackage(packageHash)) {
+                        UpdateTimings updateTimings = hotLoadUpdateTimings.get(packageHash);
+                        if (updateTimings != null) {
+                            updateTimings.record("index", indexStartTime, -1, -1);
+                            hotLoadUpdateTimings.save(updateTimings);
+                        }
+                    }
+                }
+            });
+        }
+
+        @ReactMethod
+        public void removeStatusReports(final ReadableArray reportIds, final Promise promise) {
+            metadataExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    hotLoadTelemetryManager.removeDeliveredReports(reportIds);
+                    promise.resolve("");
+                }
+            });
         }
 
         @ReactMethod
@@ -581,6 +698,32 @@ public class HotLoad {
 
         public HotLoadNativeModule(ReactApplicationContext reactContext) {
             super(reactContext);
+            hotLoadBundlePrewarmer.onReactStarted();
+
+            // Downloads run at full speed while the user is not using the app.
+            reactContext.addLifecycleEventListener(new LifecycleEventListener() {
+                @Override
+                public void onHostResume() {
+                    setInBackground(false);
+                }
+
+                @Override
+                public void onHostPause() {
+                    setInBackground(true);
+                }
+
+                @Override
+                public void onHostDestroy() {
+                }
+            });
+        }
+
+        private void setInBackground(boolean isInBackground) {
+            HotLoad.this.isInBackground = isInBackground;
+            DownloadBandwidthLimiter bandwidthLimiter = activeBandwidthLimiter;
+            if (bandwidthLimiter != null) {
+                bandwidthLimiter.setInBackground(isInBackground);
+            }
         }
 
         @Override
@@ -0,0 +1,148 @@
+package com.maxleap.hotload.react;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// Facts about the installed binary that only change when a new APK is installed: the modified
+// time of its compiled resources and the hash of its bundled JS and assets. They are computed
+// once per APK install, then served from memory and persisted in SharedPreferences under the
+// APK's path and last update time, so that cold starts do not have to open the APK again.
+public class HotLoadBinaryIdentity {
+
+    private Context applicationContext;
+    private final String HOT_LOAD_PREFERENCES;
+    private final String BINARY_HASH_KEY = "binaryHash";
+    private final String BINARY_IDENTITY_KEY = "HOT_LOAD_BINARY_IDENTITY";
+    private final String HOT_LOAD_HASH_FILE_NAME = "HotLoadHash.json";
+    private final String LAST_UPDATE_TIME_KEY = "lastUpdateTime";
+    private final String RESOURCES_BUNDLE = "resources.arsc";
+    private final String RESOURCES_MODIFIED_TIME_KEY = "resourcesModifiedTime";
+    private final String SOURCE_DIR_KEY = "sourceDir";
+
+    private String sourceDir;
+    private long lastUpdateTime;
+    private JSONObject identity;
+
+    public HotLoadBinaryIdentity(Context applicationContext, String hotLoadPreferencesKey) {
+        this.applicationContext = applicationContext;
+        this.HOT_LOAD_PREFERENCES = hotLoadPreferencesKey;
+
+        try {
+            PackageInfo pInfo = applicationContext.getPackageManager().getPackageInfo(applicationContext.getPackageName(), 0);
+            sourceDir = pInfo.applicationInfo.sourceDir;
+            lastUpdateTime = pInfo.lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            throw new HotLoadUnknownException("Unable to get package info for " + applicationContext.getPackageName(), e);
+        }
+    }
+
+    public synchronized long getResourcesModifiedTime() {
+        JSONObject identity = getIdentity();
+        if (!identity.has(RESOURCES_MODIFIED_TIME_KEY)) {
+            putAndSave(RESOURCES_MODIFIED_TIME_KEY, readResourcesModifiedTime());
+        }
+
+        return identity.optLong(RESOURCES_MODIFIED_TIME_KEY, 0);
+    }
+
+    // Returns null if the React Native assets were not bundled into the APK (e.g. in Debug builds).
+    public synchronized String getContentsHash(Activity mainActivity, boolean isDebugMode) {
+        JSONObject identity = getIdentity();
+        if (!identity.has(BINARY_HASH_KEY)) {
+            String binaryHash = readContentsHash(mainActivity, isDebugMode);
+            putAndSave(BINARY_HASH_KEY, binaryHash == null ? JSONObject.NULL : binaryHash);
+        }
+
+        return HotLoadUtils.tryGetString(identity, BINARY_HASH_KEY);
+    }
+
+    private JSONObject getIdentity() {
+        if (identity != null) {
+            return identity;
+        }
+
+        SharedPreferences settings = applicationContext.getSharedPreferences(HOT_LOAD_PREFERENCES, 0);
+        String identityString = settings.getString(BINARY_IDENTITY_KEY, null);
+        if (identityString != null) {
+            try {
+                JSONObject savedIdentity = new JSONObject(identityString);
+                if (sourceDir.equals(HotLoadUtils.tryGetString(savedIdentity, SOURCE_DIR_KEY)) &&
+                        lastUpdateTime == savedIdentity.optLong(LAST_UPDATE_TIME_KEY, -1)) {
+                    identity = savedIdentity;
+                    return identity;
+                }
+            } catch (JSONException e) {
+                // Unrecognized data format, replace it below.
+            }
+        }
+
+        // A different APK has been installed since the identity was saved.
+        identity = new JSONObject();
+        try {
+            identity.put(SOURCE_DIR_KEY, sourceDir);
+            identity.put(LAST_UPDATE_TIME_KEY, lastUpdateTime);
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to create binary identity.", e);
+        }
+
+        return identity;
+    }
+
+    private void putAndSave(String key, Object value) {
+        try {
+            identity.put(key, value);
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to set key " + key + " in binary identity.", e);
+        }
+
+        // This is only a cache of values that can be recomputed, so it does not need to block
+        // the caller (usually on the main thread) until it has been written.
+        SharedPreferences settings = applicationContext.getSharedPreferences(HOT_LOAD_PREFERENCES, 0);
+        settings.edit().putString(BINARY_IDENTITY_KEY, identity.toString()).apply();
+    }
+
+    private String readContentsHash(Activity mainActivity, boolean isDebugMode) {
+        try {
+            return HotLoadUtils.getStringFromInputStream(mainActivity.getAssets().open(HOT_LOAD_HASH_FILE_NAME));
+        } catch (IOException e) {
+            if (!isDebugMode) {
+                // Only print this message in "Release" mode. In "Debug", we may not have the
+                // hash if the build skips bundling the files.
+                HotLoadUtils.log("Unable to get the hash of the binary's bundled resources - \"hotload.gradle\" may have not been added to the build definition.");
+            }
+
+            return null;
+        }
+    }
+
+    private long readResourcesModifiedTime() {
+        ZipFile applicationFile = null;
+        try {
+            applicationFile = new ZipFile(sourceDir);
+            ZipEntry resourcesEntry = applicationFile.getEntry(RESOURCES_BUNDLE);
+            return resourcesEntry.getTime();
+        } catch (IOException e) {
+            throw new HotLoadUnknownException("Error in getting file information about compiled resources", e);
+        } finally {
+            if (applicationFile != null) {
+                try {
+                    applicationFile.close();
+                } catch (IOException e) {
+                    throw new HotLoadUnknownException("Error in closing application file.", e);
+                }
+            }
+        }
+    }
+}
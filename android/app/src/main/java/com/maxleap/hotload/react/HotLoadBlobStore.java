@@ -0,0 +1,102 @@
+package com.maxleap.hotload.react;
+
+import android.os.Build;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
+
+import java.io.File;
+import java.util.Map;
+
+// Keeps a single copy of every distinct file across the installed packages, named by the
+// SHA-256 hash of its contents. Package folders hold hard links to these blobs, so the link
+// count of a blob is its reference count: a blob only linked from the store itself belongs to
+// no package anymore and is removed by collectGarbage.
+class HotLoadBlobStore {
+    private static final String TEMPORARY_LINK_SUFFIX = ".bloblink";
+
+    private String storePath;
+
+    public HotLoadBlobStore(String storePath) {
+        this.storePath = storePath;
+    }
+
+    public static boolean isSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP;
+    }
+
+    private File getBlobFile(String hash) {
+        // Spread the blobs over subfolders so that no single folder gets too large.
+        return new File(new File(storePath, hash.substring(0, 2)), hash);
+    }
+
+    // Replaces every file of the package listed in the manifest with a link to the blob holding
+    // the same contents, adding the file to the store if no such blob exists yet. Files that
+    // cannot be linked are left in place as regular files.
+    public void addPackageContents(String packageFolderPath, UpdateContentsManifest manifest) {
+        int sharedFileCount = 0;
+        for (Map.Entry<String, String> fileHash : manifest.getFileHashes().entrySet()) {
+            File packageFile = new File(packageFolderPath, fileHash.getKey());
+            File blobFile = getBlobFile(fileHash.getValue());
+            try {
+                if (!blobFile.exists()) {
+                    blobFile.getParentFile().mkdirs();
+                    Os.link(packageFile.getAbsolutePath(), blobFile.getAbsolutePath());
+                    continue;
+                }
+
+                StructStat packageFileStat = Os.stat(packageFile.getAbsolutePath());
+                StructStat blobFileStat = Os.stat(blobFile.getAbsolutePath());
+                if (packageFileStat.st_dev == blobFileStat.st_dev && packageFileStat.st_ino == blobFileStat.st_ino) {
+                    // Already linked, e.g. carried over from the current package by a diff update.
+                    continue;
+                }
+
+                // Link next to the file and rename over it, so the package never misses the file
+                // and the blob never drops to a single link while it is being shared.
+                File temporaryLink = new File(packageFile.getParentFile(), packageFile.getName() + TEMPORARY_LINK_SUFFIX);
+                temporaryLink.delete();
+                Os.link(blobFile.getAbsolutePath(), temporaryLink.getAbsolutePath());
+                Os.rename(temporaryLink.getAbsolutePath(), packageFile.getAbsolutePath());
+                sharedFileCount++;
+            } catch (ErrnoException e) {
+                HotLoadUtils.log("Unable to add " + fileHash.getKey() + " to the blob store: " + e.getMessage());
+            }
+        }
+
+        HotLoadUtils.log("Shared " + sharedFileCount + " of " + manifest.getFileHashes().size() + " package files with existing blobs.");
+    }
+
+    // Deletes every blob that is no longer linked from any package folder.
+    public void collectGarbage() {
+        File[] blobFolders = new File(storePath).listFiles();
+        if (blobFolders == null) {
+            return;
+        }
+
+        int deletedBlobCount = 0;
+        for (File blobFolder : blobFolders) {
+            File[] blobFiles = blobFolder.listFiles();
+            if (blobFiles == null) {
+                continue;
+            }
+
+            for (File blobFile : blobFiles) {
+                try {
+                    if (Os.stat(blobFile.getAbsolutePath()).st_nlink <= 1 && blobFile.delete()) {
+                        deletedBlobCount++;
+                    }
+                } catch (ErrnoException e) {
+                    HotLoadUtils.log("Unable to check references to blob " + blobFile.getName() + ": " + e.getMessage());
+                }
+            }
+
+            // Only succeeds once the folder is empty.
+            blobFolder.delete();
+        }
+
+        if (deletedBlobCount > 0) {
+            HotLoadUtils.log("Deleted " + deletedBlobCount + " unreferenced blobs.");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.maxleap.hotload.react;
+
+import java.io.File;
+import java.io.IOException;
+
+// The little that getBundleUrl needs to know at startup about the current package: the path of
+// its bundle (null when the binary's bundle should run), the binary modified time recorded when
+// it was downloaded and the app version it targets. It is saved as a few lines of text, so that
+// startup takes a single small read instead of parsing the status file and package metadata.
+class HotLoadBootRecord {
+    private static final String FORMAT_VERSION = "1";
+
+    private final String bundlePath;
+    private final String binaryModifiedTime;
+    private final String appVersion;
+
+    public HotLoadBootRecord(String bundlePath, String binaryModifiedTime, String appVersion) {
+        this.bundlePath = bundlePath;
+        this.binaryModifiedTime = binaryModifiedTime;
+        this.appVersion = appVersion;
+    }
+
+    public String getAppVersion() {
+        return appVersion;
+    }
+
+    public String getBinaryModifiedTime() {
+        return binaryModifiedTime;
+    }
+
+    public String getBundlePath() {
+        return bundlePath;
+    }
+
+    // Returns null if there is no boot record, or it cannot be understood.
+    public static HotLoadBootRecord read(String filePath) {
+        if (!new File(filePath).exists()) {
+            return null;
+        }
+
+        try {
+            String[] lines = FileUtils.readFileToString(filePath).split("\n", -1);
+            if (lines.length < 4 || !FORMAT_VERSION.equals(lines[0])) {
+                return null;
+            }
+
+            return new HotLoadBootRecord(emptyToNull(lines[1]), emptyToNull(lines[2]), emptyToNull(lines[3]));
+        } catch (IOException e) {
+            HotLoadUtils.log("Unable to read boot record " + filePath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void write(String filePath) throws IOException {
+        String content = FORMAT_VERSION + "\n" +
+                nullToEmpty(bundlePath) + "\n" +
+                nullToEmpty(binaryModifiedTime) + "\n" +
+                nullToEmpty(appVersion) + "\n";
+        FileUtils.writeStringToFileAtomically(content, filePath);
+    }
+
+    private static String emptyToNull(String value) {
+        return value.length() == 0 ? null : value;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
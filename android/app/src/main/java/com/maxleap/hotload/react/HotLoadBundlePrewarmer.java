@@ -0,0 +1,120 @@
+package com.maxleap.hotload.react;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Reads the bundle of an update on a background thread as soon as its path is known, so that it
+// is already in the page cache when React reads it while the app starts. A prewarm counts as a
+// hit if it completed before React started, which is when the HotLoad native module is created.
+class HotLoadBundlePrewarmer {
+    private static final int READ_BUFFER_SIZE = 1024 * 256;
+
+    private String bundlePath;
+    private long bundleBytes = 0;
+    private long prewarmedBytes = 0;
+    private long startTime = -1;
+    private long finishTime = -1;
+    private long reactStartTime = -1;
+
+    public synchronized void prewarm(final String bundlePath) {
+        if (this.bundlePath != null) {
+            // The bundle of this launch is already being prewarmed.
+            return;
+        }
+
+        this.bundlePath = bundlePath;
+        this.startTime = SystemClock.elapsedRealtime();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readBundle(bundlePath);
+            }
+        }, "HotLoadBundlePrewarmer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void onReactStarted() {
+        if (reactStartTime < 0) {
+            reactStartTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    // Returns null if no bundle has been prewarmed.
+    public synchronized WritableMap getStats() {
+        if (bundlePath == null) {
+            return null;
+        }
+
+        boolean isComplete = finishTime >= 0 && prewarmedBytes == bundleBytes;
+        WritableMap stats = new WritableNativeMap();
+        stats.putString("bundlePath", bundlePath);
+        stats.putDouble("bundleBytes", bundleBytes);
+        stats.putDouble("prewarmedBytes", prewarmedBytes);
+        stats.putBoolean("isComplete", isComplete);
+        if (finishTime >= 0) {
+            stats.putDouble("prewarmMillis", finishTime - startTime);
+        }
+
+        if (reactStartTime >= 0) {
+            stats.putDouble("reactStartDelayMillis", reactStartTime - startTime);
+            stats.putBoolean("isHit", isComplete && finishTime <= reactStartTime);
+        }
+
+        return stats;
+    }
+
+    private void readBundle(String bundlePath) {
+        long numBytesRead = 0;
+        long fileLength = 0;
+        FileInputStream fin = null;
+        try {
+            fin = new FileInputStream(bundlePath);
+            FileChannel channel = fin.getChannel();
+            fileLength = channel.size();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
+                try {
+                    // Let the kernel start reading ahead of us.
+                    Os.posix_fadvise(fin.getFD(), 0, 0, OsConstants.POSIX_FADV_WILLNEED);
+                } catch (ErrnoException e) {
+                    // Only a hint, the reads below still load the bundle.
+                }
+            }
+
+            // A direct buffer avoids copying the bundle into the Java heap.
+            ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            int numBytes;
+            while ((numBytes = channel.read(buffer)) != -1) {
+                numBytesRead += numBytes;
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            HotLoadUtils.log("Unable to prewarm bundle " + bundlePath + ": " + e.getMessage());
+        } finally {
+            try {
+                if (fin != null) fin.close();
+            } catch (IOException e) {
+                // Nothing was written, so there is nothing to lose.
+            }
+        }
+
+        synchronized (this) {
+            bundleBytes = fileLength;
+            prewarmedBytes = numBytesRead;
+            finishTime = SystemClock.elapsedRealtime();
+            HotLoadUtils.log("Prewarmed " + prewarmedBytes + " bytes of " + bundlePath + " in " +
+                    (finishTime - startTime) + " ms.");
+        }
+    }
+}
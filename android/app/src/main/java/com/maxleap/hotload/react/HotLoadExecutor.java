@@ -0,0 +1,77 @@
+package com.maxleap.hotload.react;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeMap;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A lane of background work owned by HotLoad. Tasks run one at a time, in order, on a thread
+// with the given priority, so they neither wait behind nor hold up the app's own AsyncTasks.
+// Keeps track of how many tasks are waiting and how long they waited to start.
+class HotLoadExecutor {
+    private final ExecutorService executor;
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicLong completedTaskCount = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    private final AtomicLong startedTaskCount = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+
+    public HotLoadExecutor(final String threadName, final int threadPriority) {
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(threadPriority);
+                        runnable.run();
+                    }
+                }, threadName);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void execute(final Runnable task) {
+        final long enqueueTime = SystemClock.elapsedRealtime();
+        queueDepth.incrementAndGet();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                queueDepth.decrementAndGet();
+                long waitMillis = SystemClock.elapsedRealtime() - enqueueTime;
+                startedTaskCount.incrementAndGet();
+                totalWaitMillis.addAndGet(waitMillis);
+                long previousMaxWaitMillis;
+                while (waitMillis > (previousMaxWaitMillis = maxWaitMillis.get()) &&
+                        !maxWaitMillis.compareAndSet(previousMaxWaitMillis, waitMillis)) {
+                    // Another task updated the maximum at the same time, try again.
+                }
+
+                try {
+                    task.run();
+                } finally {
+                    completedTaskCount.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    public WritableMap getMetrics() {
+        long startedTasks = startedTaskCount.get();
+        WritableMap metrics = new WritableNativeMap();
+        metrics.putInt("queueDepth", queueDepth.get());
+        metrics.putDouble("completedTasks", completedTaskCount.get());
+        metrics.putDouble("averageWaitMillis", startedTasks > 0 ? (double) totalWaitMillis.get() / startedTasks : 0);
+        metrics.putDouble("maxWaitMillis", maxWaitMillis.get());
+        return metrics;
+    }
+}
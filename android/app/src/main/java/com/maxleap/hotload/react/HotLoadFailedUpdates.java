@@ -0,0 +1,152 @@
+package com.maxleap.hotload.react;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+// Keeps track of the updates that have been rolled back. Lookups by hash are served from an
+// in-memory set which is only parsed from the update state journal once, and both the set of hashes and
+// the full metadata retained for rollback reports are bounded, oldest entries first out.
+public class HotLoadFailedUpdates {
+
+    private HotLoadStateJournal hotLoadStateJournal;
+    private final String FAILED_UPDATE_HASHES_KEY = "HOT_LOAD_FAILED_UPDATE_HASHES";
+    // Kept from CodePush so that lists saved by earlier versions are migrated.
+    private final String FAILED_UPDATES_KEY = "CODE_PUSH_FAILED_UPDATES";
+    private final int MAX_FAILED_UPDATE_HASHES = 500;
+    private final int MAX_FAILED_UPDATE_PACKAGES = 10;
+    private final String PACKAGE_HASH_KEY = "packageHash";
+
+    private LinkedHashSet<String> failedHashes;
+    private JSONArray failedPackages;
+
+    public HotLoadFailedUpdates(HotLoadStateJournal hotLoadStateJournal) {
+        this.hotLoadStateJournal = hotLoadStateJournal;
+        hotLoadStateJournal.importPreference(FAILED_UPDATE_HASHES_KEY);
+        hotLoadStateJournal.importPreference(FAILED_UPDATES_KEY);
+    }
+
+    public synchronized void add(PackageMetadata failedPackage) {
+        load();
+        String packageHash = failedPackage.getPackageHash();
+        if (packageHash != null) {
+            // Re-insert so that the hash moves to the newest position.
+            failedHashes.remove(packageHash);
+            failedHashes.add(packageHash);
+        }
+
+        try {
+            failedPackages.put(new JSONObject(failedPackage.toJson()));
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to save failed update " + packageHash, e);
+        }
+
+        trim();
+        save();
+    }
+
+    public synchronized void clear() {
+        failedHashes = new LinkedHashSet<String>();
+        failedPackages = new JSONArray();
+        Map<String, String> changes = new HashMap<String, String>();
+        changes.put(FAILED_UPDATE_HASHES_KEY, null);
+        changes.put(FAILED_UPDATES_KEY, null);
+        hotLoadStateJournal.update(changes, true);
+    }
+
+    public synchronized PackageMetadata getLastFailedPackage() {
+        load();
+        JSONObject lastFailedPackage = failedPackages.optJSONObject(failedPackages.length() - 1);
+        if (lastFailedPackage == null) {
+            return null;
+        }
+
+        return PackageMetadata.fromJson(lastFailedPackage.toString());
+    }
+
+    public synchronized boolean isFailedHash(String packageHash) {
+        if (packageHash == null) {
+            return false;
+        }
+
+        load();
+        return failedHashes.contains(packageHash);
+    }
+
+    private void load() {
+        if (failedHashes != null) {
+            return;
+        }
+
+        failedPackages = parseArray(hotLoadStateJournal.getString(FAILED_UPDATES_KEY));
+        failedHashes = new LinkedHashSet<String>();
+        String failedHashesString = hotLoadStateJournal.getString(FAILED_UPDATE_HASHES_KEY);
+        if (failedHashesString != null) {
+            JSONArray failedHashesArray = parseArray(failedHashesString);
+            for (int i = 0; i < failedHashesArray.length(); i++) {
+                Object failedHash = failedHashesArray.opt(i);
+                if (failedHash instanceof String) {
+                    failedHashes.add((String) failedHash);
+                }
+            }
+        } else if (failedPackages.length() > 0) {
+            // Build the index from a list saved before hashes were indexed separately.
+            for (int i = 0; i < failedPackages.length(); i++) {
+                JSONObject failedPackage = failedPackages.optJSONObject(i);
+                String packageHash = failedPackage == null ? null : HotLoadUtils.tryGetString(failedPackage, PACKAGE_HASH_KEY);
+                if (packageHash != null) {
+                    failedHashes.remove(packageHash);
+                    failedHashes.add(packageHash);
+                }
+            }
+
+            trim();
+            save();
+        }
+    }
+
+    private JSONArray parseArray(String arrayString) {
+        if (arrayString == null) {
+            return new JSONArray();
+        }
+
+        try {
+            return new JSONArray(arrayString);
+        } catch (JSONException e) {
+            // Unrecognized data format, replace with expected format.
+            HotLoadUtils.log("Unable to parse failed updates information " + arrayString +
+                    " stored in the update state journal");
+            return new JSONArray();
+        }
+    }
+
+    private void save() {
+        Map<String, String> changes = new HashMap<String, String>();
+        changes.put(FAILED_UPDATE_HASHES_KEY, new JSONArray(failedHashes).toString());
+        changes.put(FAILED_UPDATES_KEY, failedPackages.toString());
+        hotLoadStateJournal.update(changes, true);
+    }
+
+    private void trim() {
+        Iterator<String> oldestHashes = failedHashes.iterator();
+        while (failedHashes.size() > MAX_FAILED_UPDATE_HASHES) {
+            oldestHashes.next();
+            oldestHashes.remove();
+        }
+
+        if (failedPackages.length() > MAX_FAILED_UPDATE_PACKAGES) {
+            JSONArray newestPackages = new JSONArray();
+            for (int i = failedPackages.length() - MAX_FAILED_UPDATE_PACKAGES; i < failedPackages.length(); i++) {
+                newestPackages.put(failedPackages.opt(i));
+            }
+
+            failedPackages = newestPackages;
+        }
+    }
+}
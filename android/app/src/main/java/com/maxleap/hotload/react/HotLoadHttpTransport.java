@@ -0,0 +1,100 @@
+package com.maxleap.hotload.react;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+// The default transport, based on HttpURLConnection. Responses are closed rather than their
+// connections disconnected, so that connections are kept alive and reused by later downloads.
+public class HotLoadHttpTransport implements HotLoadTransport {
+
+    private static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 15 * 1000;
+    private static final int DEFAULT_READ_TIMEOUT_MILLIS = 30 * 1000;
+
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    public HotLoadHttpTransport() {
+        this(DEFAULT_CONNECT_TIMEOUT_MILLIS, DEFAULT_READ_TIMEOUT_MILLIS);
+    }
+
+    public HotLoadHttpTransport(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) (new URL(url).openConnection());
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            connection.setRequestProperty(header.getKey(), header.getValue());
+        }
+
+        // Setting this ourselves turns off HttpURLConnection's transparent gzip support, which
+        // would otherwise also compress range requests.
+        connection.setRequestProperty("Accept-Encoding", headers.containsKey("Range") ? "identity" : "gzip");
+        return new HttpResponse(connection);
+    }
+
+    private static class HttpResponse implements Response {
+        private HttpURLConnection connection;
+        private InputStream body;
+
+        HttpResponse(HttpURLConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public int getStatusCode() throws IOException {
+            return connection.getResponseCode();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return connection.getHeaderField(name);
+        }
+
+        @Override
+        public long getContentLength() {
+            String contentLength = connection.getHeaderField("Content-Length");
+            if (isGzipEncoded() || contentLength == null) {
+                return -1;
+            }
+
+            try {
+                return Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                InputStream inputStream = connection.getInputStream();
+                body = isGzipEncoded() ? new GZIPInputStream(inputStream) : inputStream;
+            }
+
+            return body;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (body != null) {
+                body.close();
+            } else {
+                // The body was never read, so the connection cannot be reused.
+                connection.disconnect();
+            }
+        }
+
+        private boolean isGzipEncoded() {
+            return "gzip".equalsIgnoreCase(connection.getHeaderField("Content-Encoding"));
+        }
+    }
+}
@@ -2,45 +2,160 @@ package com.maxleap.hotload.react;
 
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.WritableMap;
-import com.facebook.react.bridge.WritableNativeMap;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.URL;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class HotLoadPackage {
 
     private final String HOT_LOAD_FOLDER_PREFIX = "HotLoad";
+    private final String BLOB_STORE_FOLDER_NAME = "blobs";
+    private final String BOOT_RECORD_FILE = "boot.record";
     private final String CURRENT_PACKAGE_KEY = "currentPackage";
     private final String DIFF_MANIFEST_FILE_NAME = "hothotload.json";
     private final int DOWNLOAD_BUFFER_SIZE = 1024 * 256;
-    private final String DOWNLOAD_FILE_NAME = "download.zip";
+    private final String DOWNLOAD_FILE_EXTENSION = ".download";
+    private final String DOWNLOAD_STATE_FILE_EXTENSION = ".download.json";
+    private final String DOWNLOAD_STATE_ETAG_KEY = "etag";
+    private final String DOWNLOAD_STATE_LAST_MODIFIED_KEY = "lastModified";
     private final String DOWNLOAD_URL_KEY = "downloadUrl";
+    private final String FULL_PACKAGE_DOWNLOAD_URL_KEY = "fullPackageDownloadUrl";
+    private final long MIN_SEGMENTED_DOWNLOAD_SIZE = 1024 * 1024 * 4;
     private final String PACKAGE_FILE_NAME = "app.json";
     private final String PACKAGE_HASH_KEY = "packageHash";
     private final String PREVIOUS_PACKAGE_KEY = "previousPackage";
     private final String RELATIVE_BUNDLE_PATH_KEY = "bundlePath";
+    private final String REPLACED_PACKAGE_FOLDER_EXTENSION = ".replaced";
+    private final String STAGING_FOLDER_NAME = "staging";
     private final String STATUS_FILE = "hotload.json";
     private final String UNZIPPED_FOLDER_NAME = "unzipped";
     private final String UPDATE_BUNDLE_FILE_NAME = "app.jsbundle";
 
+    private boolean blobStoreEnabled = false;
+    private JSONObject currentPackageInfo = null;
+    private PackageMetadata currentPackageMetadata = null;
+    private String currentPackageMetadataHash = null;
     private String documentsDirectory;
+    private int extractionThreadCount = 1;
+    private boolean isInstallRecoveryDone = false;
+    private int segmentedDownloadCount = 1;
+    private boolean streamingExtractionEnabled = false;
+    private HotLoadTransport transport = new HotLoadHttpTransport();
 
     public HotLoadPackage(String documentsDirectory) {
         this.documentsDirectory = documentsDirectory;
     }
 
-    private String getDownloadFilePath() {
-        return HotLoadUtils.appendPathComponent(getHotLoadPath(), DOWNLOAD_FILE_NAME);
+    // Once enabled, packages keep their files in a content addressed store shared with the other
+    // installed packages. Packages installed before then keep independent copies of their files.
+    public void setBlobStoreEnabled(boolean blobStoreEnabled) {
+        this.blobStoreEnabled = blobStoreEnabled && HotLoadBlobStore.isSupported();
+    }
+
+    public void setExtractionThreadCount(int extractionThreadCount) {
+        this.extractionThreadCount = extractionThreadCount;
+    }
+
+    public void setSegmentedDownloadCount(int segmentedDownloadCount) {
+        this.segmentedDownloadCount = segmentedDownloadCount;
+    }
+
+    public void setStreamingExtractionEnabled(boolean streamingExtractionEnabled) {
+        this.streamingExtractionEnabled = streamingExtractionEnabled;
+    }
+
+    public void setTransport(HotLoadTransport transport) {
+        this.transport = transport;
+    }
+
+    private HotLoadBlobStore getBlobStore() {
+        if (!blobStoreEnabled) {
+            return null;
+        }
+
+        return new HotLoadBlobStore(HotLoadUtils.appendPathComponent(getHotLoadPath(), BLOB_STORE_FOLDER_NAME));
+    }
+
+    private String getDownloadFilePath(String packageHash) {
+        return HotLoadUtils.appendPathComponent(getHotLoadPath(), packageHash + DOWNLOAD_FILE_EXTENSION);
+    }
+
+    private String getDownloadStateFilePath(String packageHash) {
+        return HotLoadUtils.appendPathComponent(getHotLoadPath(), packageHash + DOWNLOAD_STATE_FILE_EXTENSION);
+    }
+
+    // Returns the validator (ETag or Last-Modified) saved for a partially downloaded package,
+    // or null if the partial download cannot be resumed against the given url.
+    private String getResumableDownloadValidator(String packageHash, String downloadUrlString) {
+        String downloadStateFilePath = getDownloadStateFilePath(packageHash);
+        if (!FileUtils.fileAtPathExists(downloadStateFilePath)) {
+            return null;
+        }
+
+        try {
+            JSONObject downloadState = new JSONObject(FileUtils.readFileToString(downloadStateFilePath));
+            if (!downloadUrlString.equals(downloadState.optString(DOWNLOAD_URL_KEY, null))) {
+                return null;
+            }
+
+            String etag = downloadState.optString(DOWNLOAD_STATE_ETAG_KEY, null);
+            return etag != null ? etag : downloadState.optString(DOWNLOAD_STATE_LAST_MODIFIED_KEY, null);
+        } catch (IOException | JSONException e) {
+            HotLoadUtils.log("Unable to read partial download state for " + packageHash + ", restarting download.");
+            return null;
+        }
+    }
+
+    private void deleteResumableDownloadState(String packageHash) {
+        File downloadStateFile = new File(getDownloadStateFilePath(packageHash));
+        downloadStateFile.delete();
+    }
+
+    private void saveResumableDownloadState(String packageHash, String downloadUrlString, HotLoadTransport.Response response) {
+        String etag = response.getHeader("ETag");
+        String lastModified = response.getHeader("Last-Modified");
+        // Weak validators cannot be used with If-Range, so such responses are not resumable.
+        if (etag != null && etag.startsWith("W/")) {
+            etag = null;
+        }
+
+        if (etag == null && lastModified == null) {
+            deleteResumableDownloadState(packageHash);
+            return;
+        }
+
+        try {
+            JSONObject downloadState = new JSONObject();
+            downloadState.put(DOWNLOAD_URL_KEY, downloadUrlString);
+            downloadState.put(DOWNLOAD_STATE_ETAG_KEY, etag);
+            downloadState.put(DOWNLOAD_STATE_LAST_MODIFIED_KEY, lastModified);
+            FileUtils.writeStringToFile(downloadState.toString(), getDownloadStateFilePath(packageHash));
+        } catch (IOException | JSONException e) {
+            // The download can still proceed, it just will not be resumable.
+            HotLoadUtils.log("Unable to save partial download state for " + packageHash + ".");
+        }
     }
 
     private String getUnzippedFolderPath() {
@@ -60,34 +175,129 @@ public class HotLoadPackage {
         return hotLoadPath;
     }
 
+    private String getStagingFolderPath() {
+        return HotLoadUtils.appendPathComponent(getHotLoadPath(), STAGING_FOLDER_NAME);
+    }
+
+    private String getStagedPackageFolderPath(String packageHash) {
+        return HotLoadUtils.appendPathComponent(getStagingFolderPath(), packageHash);
+    }
+
     private String getStatusFilePath() {
         return HotLoadUtils.appendPathComponent(getHotLoadPath(), STATUS_FILE);
     }
 
-    public WritableMap getCurrentPackageInfo() {
-        String statusFilePath = getStatusFilePath();
-        if (!FileUtils.fileAtPathExists(statusFilePath)) {
-            return new WritableNativeMap();
+    private String getBootRecordFilePath() {
+        return HotLoadUtils.appendPathComponent(getHotLoadPath(), BOOT_RECORD_FILE);
+    }
+
+    // The status file and the current package's metadata are read once and then served from
+    // memory. Every change to them goes through this class, which refreshes these copies. The
+    // status is never handed out directly, callers get a new WritableMap they are free to modify,
+    // while the metadata is immutable and can be shared.
+    private synchronized JSONObject getCurrentPackageInfoJson() {
+        if (currentPackageInfo == null) {
+            if (!isInstallRecoveryDone) {
+                recoverInterruptedInstall();
+                isInstallRecoveryDone = true;
+            }
+
+            String statusFilePath = getStatusFilePath();
+            if (!FileUtils.fileAtPathExists(statusFilePath)) {
+                currentPackageInfo = new JSONObject();
+            } else {
+                try {
+                    currentPackageInfo = HotLoadUtils.getJsonObjectFromFile(statusFilePath);
+                } catch (IOException e) {
+                    throw new HotLoadUnknownException("Error getting current package info", e);
+                }
+            }
         }
 
-        try {
-            return HotLoadUtils.getWritableMapFromFile(statusFilePath);
-        } catch (IOException e) {
-            throw new HotLoadUnknownException("Error getting current package info", e);
+        return currentPackageInfo;
+    }
+
+    private synchronized PackageMetadata getCurrentPackageMetadata() {
+        String packageHash = getCurrentPackageHash();
+        if (packageHash == null) {
+            return null;
         }
+
+        if (!packageHash.equals(currentPackageMetadataHash)) {
+            String packagePath = HotLoadUtils.appendPathComponent(getPackageFolderPath(packageHash), PACKAGE_FILE_NAME);
+            try {
+                currentPackageMetadata = PackageMetadata.read(packagePath);
+            } catch (IOException e) {
+                // Should not happen unless the update metadata was somehow deleted.
+                currentPackageMetadata = null;
+            }
+
+            currentPackageMetadataHash = packageHash;
+        }
+
+        return currentPackageMetadata;
     }
 
-    public void updateCurrentPackageInfo(ReadableMap packageInfo) {
+    private synchronized void resetCachedPackageInfo() {
+        currentPackageInfo = null;
+        currentPackageMetadata = null;
+        currentPackageMetadataHash = null;
+    }
+
+    public WritableMap getCurrentPackageInfo() {
+        return HotLoadUtils.convertJsonObjectToWritable(getCurrentPackageInfoJson());
+    }
+
+    // The boot record is removed before the status file changes and written again afterwards, so
+    // if the process dies in between, the next startup rebuilds it from the status file.
+    public synchronized void updateCurrentPackageInfo(ReadableMap packageInfo) {
+        JSONObject packageInfoJson = HotLoadUtils.convertReadableToJsonObject(packageInfo);
+        new File(getBootRecordFilePath()).delete();
         try {
-            HotLoadUtils.writeReadableMapToFile(packageInfo, getStatusFilePath());
+            FileUtils.writeStringToFileAtomically(packageInfoJson.toString(), getStatusFilePath());
         } catch (IOException e) {
             throw new HotLoadUnknownException("Error updating current package info", e);
         }
+
+        currentPackageInfo = packageInfoJson;
+        writeBootRecord();
+    }
+
+    // Everything getBundleUrl needs at startup, served from the boot record when there is one.
+    public synchronized HotLoadBootRecord getBootRecord() {
+        HotLoadBootRecord bootRecord = HotLoadBootRecord.read(getBootRecordFilePath());
+        // A bundle that is missing may be part of an interrupted install, which the slow path
+        // recovers before resolving the current package again.
+        if (bootRecord == null ||
+                (bootRecord.getBundlePath() != null && !new File(bootRecord.getBundlePath()).exists())) {
+            bootRecord = writeBootRecord();
+        }
+
+        return bootRecord;
+    }
+
+    private synchronized HotLoadBootRecord writeBootRecord() {
+        String bundlePath = getCurrentPackageBundlePath();
+        PackageMetadata currentPackage = getCurrentPackageMetadata();
+        HotLoadBootRecord bootRecord = new HotLoadBootRecord(bundlePath,
+                currentPackage == null ? null : currentPackage.getBinaryModifiedTime(),
+                currentPackage == null ? null : currentPackage.getAppVersion());
+
+        // Nothing has been downloaded yet, and no folder is created just to record that.
+        if (new File(getHotLoadPath()).exists()) {
+            try {
+                bootRecord.write(getBootRecordFilePath());
+            } catch (IOException e) {
+                // Startup falls back to the status file until the record can be written.
+                HotLoadUtils.log("Unable to write boot record: " + e.getMessage());
+            }
+        }
+
+        return bootRecord;
     }
 
     public String getCurrentPackageFolderPath() {
-        WritableMap info = getCurrentPackageInfo();
-        String packageHash = HotLoadUtils.tryGetString(info, CURRENT_PACKAGE_KEY);
+        String packageHash = getCurrentPackageHash();
         if (packageHash == null) {
             return null;
         }
@@ -101,8 +311,8 @@ public class HotLoadPackage {
             return null;
         }
 
-        WritableMap currentPackage = getCurrentPackage();
-        String relativeBundlePath = HotLoadUtils.tryGetString(currentPackage, RELATIVE_BUNDLE_PATH_KEY);
+        PackageMetadata currentPackage = getCurrentPackageMetadata();
+        String relativeBundlePath = currentPackage == null ? null : currentPackage.getString(RELATIVE_BUNDLE_PATH_KEY);
         if (relativeBundlePath == null) {
             return HotLoadUtils.appendPathComponent(packageFolder, UPDATE_BUNDLE_FILE_NAME);
         } else {
@@ -115,135 +325,452 @@ public class HotLoadPackage {
     }
 
     public String getCurrentPackageHash() {
-        WritableMap info = getCurrentPackageInfo();
-        return HotLoadUtils.tryGetString(info, CURRENT_PACKAGE_KEY);
+        return HotLoadUtils.tryGetString(getCurrentPackageInfoJson(), CURRENT_PACKAGE_KEY);
     }
 
     public String getPreviousPackageHash() {
-        WritableMap info = getCurrentPackageInfo();
-        return HotLoadUtils.tryGetString(info, PREVIOUS_PACKAGE_KEY);
+        return HotLoadUtils.tryGetString(getCurrentPackageInfoJson(), PREVIOUS_PACKAGE_KEY);
     }
 
-    public WritableMap getCurrentPackage() {
-        String folderPath = getCurrentPackageFolderPath();
-        if (folderPath == null) {
-            return null;
-        }
+    public PackageMetadata getCurrentPackage() {
+        return getCurrentPackageMetadata();
+    }
 
-        String packagePath = HotLoadUtils.appendPathComponent(folderPath, PACKAGE_FILE_NAME);
+    public PackageMetadata getPackage(String packageHash) {
+        String folderPath = getPackageFolderPath(packageHash);
+        String packageFilePath = HotLoadUtils.appendPathComponent(folderPath, PACKAGE_FILE_NAME);
         try {
-            return HotLoadUtils.getWritableMapFromFile(packagePath);
+            return PackageMetadata.read(packageFilePath);
         } catch (IOException e) {
-            // Should not happen unless the update metadata was somehow deleted.
             return null;
         }
     }
 
-    public WritableMap getPackage(String packageHash) {
-        String folderPath = getPackageFolderPath(packageHash);
-        String packageFilePath = HotLoadUtils.appendPathComponent(folderPath, PACKAGE_FILE_NAME);
+    // Downloads the package into downloadFile and returns whether it is a zip archive.
+    private boolean downloadPackageFile(String packageHash, String downloadUrlString, File downloadFile,
+                                        DownloadProgressCallback progressCallback) throws IOException {
+        HotLoadTransport.Response response = null;
+        ReadableByteChannel source = null;
+        FileOutputStream fos = null;
+        File downloadFolder = new File(getHotLoadPath());
+        boolean isZip = false;
+
+        // Large packages may be downloaded in parallel segments, unless there is a previous
+        // attempt to resume.
+        if (segmentedDownloadCount > 1 && getResumableDownloadValidator(packageHash, downloadUrlString) == null &&
+                downloadPackageInSegments(packageHash, downloadUrlString, downloadFile, progressCallback)) {
+            return isZipFile(downloadFile);
+        }
+
+        // Download the file while checking if it is a zip and notifying client of progress. If a
+        // previous attempt for this package was interrupted, resume it with a range request.
         try {
-            return HotLoadUtils.getWritableMapFromFile(packageFilePath);
-        } catch (IOException e) {
-            return null;
+            downloadFolder.mkdirs();
+
+            long resumeOffset = 0;
+            String resumeValidator = getResumableDownloadValidator(packageHash, downloadUrlString);
+            if (resumeValidator != null && downloadFile.exists()) {
+                resumeOffset = downloadFile.length();
+            }
+
+            Map<String, String> headers = new HashMap<String, String>();
+            if (resumeOffset > 0) {
+                headers.put("Range", "bytes=" + resumeOffset + "-");
+                headers.put("If-Range", resumeValidator);
+            }
+
+            response = transport.get(downloadUrlString, headers);
+            if (response.getStatusCode() == 416 && resumeOffset > 0) {
+                // The saved partial download does not match the remote file (e.g. it is already
+                // complete or the file was replaced), so discard it and download the whole file.
+                HotLoadUtils.log("Unable to resume download of " + packageHash + ", downloading it again.");
+                response.close();
+                response = null;
+                downloadFile.delete();
+                deleteResumableDownloadState(packageHash);
+                resumeOffset = 0;
+                response = transport.get(downloadUrlString, new HashMap<String, String>());
+            }
+
+            if (response.getStatusCode() == HttpURLConnection.HTTP_PARTIAL && resumeOffset > 0) {
+                HotLoadUtils.log("Resuming download of " + packageHash + " from byte " + resumeOffset + ".");
+            } else {
+                // The server ignored the range request or the remote file changed.
+                resumeOffset = 0;
+            }
+
+            saveResumableDownloadState(packageHash, downloadUrlString, response);
+
+            long contentLength = response.getContentLength();
+            long totalBytes = contentLength < 0 ? contentLength : resumeOffset + contentLength;
+            long receivedBytes = resumeOffset;
+
+            source = Channels.newChannel(response.getBody());
+            fos = new FileOutputStream(downloadFile, /* append */ resumeOffset > 0);
+            receivedBytes = transferToFile(source, fos.getChannel(), resumeOffset, totalBytes, receivedBytes, progressCallback);
+
+            // The length is not known in advance for chunked or compressed responses.
+            if (totalBytes >= 0 && totalBytes != receivedBytes) {
+                throw new HotLoadUnknownException("Received " + receivedBytes + " bytes, expected " + totalBytes);
+            }
+
+            isZip = isZipFile(downloadFile);
+        } catch (MalformedURLException e) {
+            throw new HotLoadMalformedDataException(downloadUrlString, e);
+        } finally {
+            try {
+                if (fos != null) fos.close();
+                if (source != null) source.close();
+                if (response != null) response.close();
+            } catch (IOException e) {
+                throw new HotLoadUnknownException("Error closing IO resources.", e);
+            }
+        }
+
+        // The download is complete, so it no longer needs to be resumable.
+        deleteResumableDownloadState(packageHash);
+        return isZip;
+    }
+
+    // Downloads the package as segmentedDownloadCount byte ranges fetched in parallel, each written
+    // at its offset in the preallocated downloadFile. Returns false without downloading anything if
+    // the package is too small to benefit, or the server does not support range requests.
+    private boolean downloadPackageInSegments(String packageHash, final String downloadUrlString, File downloadFile,
+                                              DownloadProgressCallback progressCallback) throws IOException {
+        // Probe the size of the package, and a validator which ensures that every segment comes
+        // from the same version of it.
+        long totalBytes = -1;
+        String validator;
+        HotLoadTransport.Response probeResponse = null;
+        try {
+            Map<String, String> headers = new HashMap<String, String>();
+            headers.put("Range", "bytes=0-0");
+            probeResponse = transport.get(downloadUrlString, headers);
+            if (probeResponse.getStatusCode() != HttpURLConnection.HTTP_PARTIAL) {
+                return false;
+            }
+
+            String contentRange = probeResponse.getHeader("Content-Range");
+            int totalBytesIndex = contentRange == null ? -1 : contentRange.lastIndexOf('/');
+            if (totalBytesIndex >= 0) {
+                try {
+                    totalBytes = Long.parseLong(contentRange.substring(totalBytesIndex + 1).trim());
+                } catch (NumberFormatException e) {
+                    // The size is unknown ("*").
+                }
+            }
+
+            validator = probeResponse.getHeader("ETag");
+            if (validator == null || validator.startsWith("W/")) {
+                validator = probeResponse.getHeader("Last-Modified");
+            }
+
+            // Read the probed byte, so that the connection can be reused.
+            probeResponse.getBody().read();
+        } catch (MalformedURLException e) {
+            throw new HotLoadMalformedDataException(downloadUrlString, e);
+        } finally {
+            if (probeResponse != null) probeResponse.close();
+        }
+
+        if (totalBytes < MIN_SEGMENTED_DOWNLOAD_SIZE || validator == null) {
+            return false;
+        }
+
+        // A partially written segmented download has holes in it, so it is never resumed.
+        deleteResumableDownloadState(packageHash);
+        new File(getHotLoadPath()).mkdirs();
+
+        long startTime = System.nanoTime();
+        final int segmentCount = segmentedDownloadCount;
+        final long segmentSize = (totalBytes + segmentCount - 1) / segmentCount;
+        final String segmentValidator = validator;
+        final SegmentedDownloadProgress segmentedProgress = new SegmentedDownloadProgress(totalBytes, progressCallback);
+        RandomAccessFile file = new RandomAccessFile(downloadFile, "rw");
+        ExecutorService executor = null;
+        boolean isComplete = false;
+        try {
+            file.setLength(totalBytes);
+            final FileChannel destination = file.getChannel();
+            executor = Executors.newFixedThreadPool(segmentCount);
+            ArrayList<Future<Void>> segments = new ArrayList<>();
+            for (int i = 0; i < segmentCount; i++) {
+                final long segmentStart = i * segmentSize;
+                final long segmentEnd = Math.min(totalBytes, segmentStart + segmentSize) - 1;
+                if (segmentStart > segmentEnd) {
+                    break;
+                }
+
+                segments.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        downloadSegment(downloadUrlString, segmentValidator, destination, segmentStart, segmentEnd,
+                                segmentedProgress.createSegmentCallback());
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> segment : segments) {
+                try {
+                    segment.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new HotLoadUnknownException("Interrupted while downloading " + packageHash + ".", e);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+
+                    throw new HotLoadUnknownException("Error downloading " + packageHash + ".", e.getCause());
+                }
+            }
+
+            isComplete = true;
+        } finally {
+            if (executor != null) executor.shutdownNow();
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new HotLoadUnknownException("Error closing IO resources.", e);
+            }
+
+            if (!isComplete) {
+                downloadFile.delete();
+            }
         }
+
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+        HotLoadUtils.log("Downloaded " + totalBytes + " bytes in " + segmentCount + " segments in " + elapsedMillis +
+                " ms (" + (totalBytes * 1000 / elapsedMillis / 1024) + " KB/s).");
+        return true;
     }
 
-    public void downloadPackage(ReadableMap updatePackage, String expectedBundleFileName,
-                                DownloadProgressCallback progressCallback) throws IOException {
-        String newUpdateHash = HotLoadUtils.tryGetString(updatePackage, PACKAGE_HASH_KEY);
-        String newUpdateFolderPath = getPackageFolderPath(newUpdateHash);
-        String newUpdateMetadataPath = HotLoadUtils.appendPathComponent(newUpdateFolderPath, PACKAGE_FILE_NAME);
-        if (FileUtils.fileAtPathExists(newUpdateFolderPath)) {
-            // This removes any stale data in newPackageFolderPath that could have been left
-            // uncleared due to a crash or error during the download or install process.
-            FileUtils.deleteDirectoryAtPath(newUpdateFolderPath);
+    private void downloadSegment(String downloadUrlString, String validator, FileChannel destination,
+                                 long segmentStart, long segmentEnd, DownloadProgressCallback progressCallback) throws IOException {
+        HotLoadTransport.Response response = null;
+        ReadableByteChannel source = null;
+        try {
+            Map<String, String> headers = new HashMap<String, String>();
+            headers.put("Range", "bytes=" + segmentStart + "-" + segmentEnd);
+            headers.put("If-Range", validator);
+            response = transport.get(downloadUrlString, headers);
+            if (response.getStatusCode() != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Unable to download bytes " + segmentStart + "-" + segmentEnd +
+                        " of " + downloadUrlString + ", the package changed during the download.");
+            }
+
+            long segmentBytes = segmentEnd - segmentStart + 1;
+            source = Channels.newChannel(response.getBody());
+            long receivedBytes = transferToFile(source, destination, segmentStart, segmentBytes, 0, progressCallback);
+            if (receivedBytes != segmentBytes) {
+                throw new IOException("Received " + receivedBytes + " bytes, expected " + segmentBytes +
+                        " for bytes " + segmentStart + "-" + segmentEnd + " of " + downloadUrlString);
+            }
+        } finally {
+            if (source != null) source.close();
+            if (response != null) response.close();
         }
+    }
+
+    private static boolean isZipFile(File file) throws IOException {
+        byte[] header = new byte[4];
+        readFileHeader(file, header);
+        return ByteBuffer.wrap(header).getInt() == 0x504b0304;
+    }
 
-        String downloadUrlString = HotLoadUtils.tryGetString(updatePackage, DOWNLOAD_URL_KEY);
-        HttpURLConnection connection = null;
+    // Writes everything read from source to destination, starting at the given position, through
+    // a pooled buffer. Returns receivedBytes increased by the number of bytes written.
+    private static long transferToFile(ReadableByteChannel source, FileChannel destination, long position, long totalBytes,
+                                       long receivedBytes, DownloadProgressCallback progressCallback) throws IOException {
+        ByteBuffer buffer = DownloadBufferPool.acquire();
+        try {
+            boolean isEndOfStream = false;
+            while (!isEndOfStream) {
+                isEndOfStream = source.read(buffer) < 0;
+                if (buffer.hasRemaining() && !isEndOfStream) {
+                    // Fill the buffer before writing it out.
+                    continue;
+                }
+
+                buffer.flip();
+                if (!buffer.hasRemaining()) {
+                    continue;
+                }
+
+                while (buffer.hasRemaining()) {
+                    int numBytesWritten = destination.write(buffer, position);
+                    position += numBytesWritten;
+                    receivedBytes += numBytesWritten;
+                }
+
+                buffer.clear();
+                progressCallback.call(totalBytes, receivedBytes);
+            }
+        } finally {
+            DownloadBufferPool.release(buffer);
+        }
+
+        return receivedBytes;
+    }
+
+    // Downloads the package without saving the archive: zip contents are inflated straight into
+    // packageFolderPath as they arrive, hashing them into the manifest, and any other file is
+    // written as the package's bundle. Returns whether the package is a zip archive.
+    private boolean downloadAndExtractPackage(String downloadUrlString, String packageFolderPath,
+                                              UpdateContentsManifest manifest,
+                                              DownloadProgressCallback progressCallback) throws IOException {
+        HotLoadTransport.Response response = null;
+        DownloadProgressInputStream din = null;
         BufferedInputStream bin = null;
-        FileOutputStream fos = null;
-        BufferedOutputStream bout = null;
-        File downloadFile = null;
         boolean isZip = false;
 
-        // Download the file while checking if it is a zip and notifying client of progress.
         try {
-            URL downloadUrl = new URL(downloadUrlString);
-            connection = (HttpURLConnection) (downloadUrl.openConnection());
+            response = transport.get(downloadUrlString, new HashMap<String, String>());
 
-            long totalBytes = connection.getContentLength();
-            long receivedBytes = 0;
+            long totalBytes = response.getContentLength();
+            din = new DownloadProgressInputStream(response.getBody(), totalBytes, progressCallback);
+            bin = new BufferedInputStream(din, DOWNLOAD_BUFFER_SIZE);
 
-            bin = new BufferedInputStream(connection.getInputStream());
-            File downloadFolder = new File(getHotLoadPath());
-            downloadFolder.mkdirs();
-            downloadFile = new File(downloadFolder, DOWNLOAD_FILE_NAME);
-            fos = new FileOutputStream(downloadFile);
-            bout = new BufferedOutputStream(fos, DOWNLOAD_BUFFER_SIZE);
-            byte[] data = new byte[DOWNLOAD_BUFFER_SIZE];
+            // Sniff the header without consuming it, so that the extraction sees the whole stream.
             byte[] header = new byte[4];
+            bin.mark(header.length);
+            int headerLength = 0;
+            int numBytesRead;
+            while (headerLength < header.length && (numBytesRead = bin.read(header, headerLength, header.length - headerLength)) >= 0) {
+                headerLength += numBytesRead;
+            }
 
-            int numBytesRead = 0;
-            while ((numBytesRead = bin.read(data, 0, DOWNLOAD_BUFFER_SIZE)) >= 0) {
-                if (receivedBytes < 4) {
-                    for (int i = 0; i < numBytesRead; i++) {
-                        int headerOffset = (int) (receivedBytes) + i;
-                        if (headerOffset >= 4) {
-                            break;
-                        }
+            bin.reset();
+            isZip = headerLength == header.length && ByteBuffer.wrap(header).getInt() == 0x504b0304;
 
-                        header[headerOffset] = data[i];
+            byte[] data = new byte[DOWNLOAD_BUFFER_SIZE];
+            if (isZip) {
+                FileUtils.unzipStream(bin, packageFolderPath, manifest);
+                // Consume the central directory so that the whole response is accounted for.
+                while (bin.read(data, 0, DOWNLOAD_BUFFER_SIZE) >= 0) ;
+            } else {
+                File packageFolder = new File(packageFolderPath);
+                packageFolder.mkdirs();
+                FileOutputStream fos = new FileOutputStream(new File(packageFolder, UPDATE_BUNDLE_FILE_NAME));
+                try {
+                    while ((numBytesRead = bin.read(data, 0, DOWNLOAD_BUFFER_SIZE)) >= 0) {
+                        fos.write(data, 0, numBytesRead);
                     }
+                } finally {
+                    fos.close();
                 }
-
-                receivedBytes += numBytesRead;
-                bout.write(data, 0, numBytesRead);
-                progressCallback.call(new DownloadProgress(totalBytes, receivedBytes));
             }
 
-            if (totalBytes != receivedBytes) {
+            long receivedBytes = din.getReceivedBytes();
+            if (totalBytes >= 0 && totalBytes != receivedBytes) {
                 throw new HotLoadUnknownException("Received " + receivedBytes + " bytes, expected " + totalBytes);
             }
-
-            isZip = ByteBuffer.wrap(header).getInt() == 0x504b0304;
         } catch (MalformedURLException e) {
             throw new HotLoadMalformedDataException(downloadUrlString, e);
         } finally {
             try {
-                if (bout != null) bout.close();
-                if (fos != null) fos.close();
                 if (bin != null) bin.close();
-                if (connection != null) connection.disconnect();
+                if (din != null) din.close();
+                if (response != null) response.close();
             } catch (IOException e) {
                 throw new HotLoadUnknownException("Error closing IO resources.", e);
             }
         }
 
+        return isZip;
+    }
+
+    // Returns the metadata saved with the package. The time each phase takes is recorded in
+    // updateTimings.
+    public PackageMetadata downloadPackage(PackageMetadata updatePackage, String expectedBundleFileName,
+                                           DownloadProgressCallback progressCallback, UpdateTimings updateTimings) throws IOException {
+        String newUpdateHash = updatePackage.getPackageHash();
+        // The package is put together in a staging folder and only published under its hash once
+        // it is complete, so a crash during the install never leaves a partial package behind.
+        String stagedUpdateFolderPath = getStagedPackageFolderPath(newUpdateHash);
+        String newUpdateMetadataPath = HotLoadUtils.appendPathComponent(stagedUpdateFolderPath, PACKAGE_FILE_NAME);
+        if (FileUtils.fileAtPathExists(stagedUpdateFolderPath)) {
+            // This removes any stale data in stagedUpdateFolderPath that could have been left
+            // uncleared due to an error during a previous attempt.
+            FileUtils.deleteDirectoryAtPath(stagedUpdateFolderPath);
+        }
+
+        String downloadUrlString = updatePackage.getString(DOWNLOAD_URL_KEY);
+        File downloadFile = new File(getDownloadFilePath(newUpdateHash));
+        boolean extractWhileDownloading = streamingExtractionEnabled;
+        HotLoadBlobStore blobStore = getBlobStore();
+        UpdateContentsManifest updateContentsManifest = new UpdateContentsManifest();
+        ReceivedBytesCounter receivedBytesCounter = new ReceivedBytesCounter(progressCallback);
+        String unzippedFolderPath;
+        boolean isZip;
+        long phaseStartTime = System.nanoTime();
+        if (extractWhileDownloading) {
+            // The archive is never written to disk, its contents go straight into the package folder.
+            unzippedFolderPath = stagedUpdateFolderPath;
+            isZip = downloadAndExtractPackage(downloadUrlString, stagedUpdateFolderPath, updateContentsManifest, receivedBytesCounter);
+            updateTimings.record("downloadAndExtract", phaseStartTime, receivedBytesCounter.receivedBytes,
+                    updateContentsManifest.getFileHashes().size());
+        } else {
+            unzippedFolderPath = getUnzippedFolderPath();
+            isZip = downloadPackageFile(newUpdateHash, downloadUrlString, downloadFile, receivedBytesCounter);
+            updateTimings.record("download", phaseStartTime, receivedBytesCounter.receivedBytes, 1);
+        }
+
+        // Whether every file of the new package has its hash in the manifest, so it can be indexed.
+        boolean hasContentsManifest = (isZip && extractWhileDownloading) || blobStore != null;
         if (isZip) {
-            // Unzip the downloaded file and then delete the zip
-            String unzippedFolderPath = getUnzippedFolderPath();
-            FileUtils.unzipFile(downloadFile, unzippedFolderPath);
-            FileUtils.deleteFileOrFolderSilently(downloadFile);
-
-            // Merge contents with current update based on the manifest
-            String diffManifestFilePath = HotLoadUtils.appendPathComponent(unzippedFolderPath,
-                    DIFF_MANIFEST_FILE_NAME);
-            boolean isDiffUpdate = FileUtils.fileAtPathExists(diffManifestFilePath);
+            if (!extractWhileDownloading) {
+                // Unzip the downloaded file and then delete the zip
+                phaseStartTime = System.nanoTime();
+                long archiveBytes = downloadFile.length();
+                int extractedFileCount = FileUtils.unzipFile(downloadFile, unzippedFolderPath, extractionThreadCount);
+                FileUtils.deleteFileOrFolderSilently(downloadFile);
+                updateTimings.record("unzip", phaseStartTime, archiveBytes, extractedFileCount);
+            }
+
+            boolean isDiffUpdate = FileUtils.fileAtPathExists(
+                    HotLoadUtils.appendPathComponent(unzippedFolderPath, DIFF_MANIFEST_FILE_NAME));
+            if (!extractWhileDownloading) {
+                // Only diff updates are verified and only the blob store needs the file hashes
+                // otherwise, so only hash the copied files for those.
+                boolean needsContentsManifest = isDiffUpdate || blobStore != null;
+                hasContentsManifest = hasContentsManifest || needsContentsManifest;
+                phaseStartTime = System.nanoTime();
+                int copiedFileCount = FileUtils.copyDirectoryContents(unzippedFolderPath, stagedUpdateFolderPath, needsContentsManifest ? updateContentsManifest : null);
+                FileUtils.deleteFileAtPathSilently(unzippedFolderPath);
+                updateTimings.record("copy", phaseStartTime, -1, copiedFileCount);
+            }
+
+            // Merge contents with current update based on the manifest. This happens after the
+            // diff contents are in place and patched, so that the files it replaces are never
+            // brought over.
+            boolean isPatchedUpdate = false;
             if (isDiffUpdate) {
+                String diffManifestFilePath = HotLoadUtils.appendPathComponent(stagedUpdateFolderPath,
+                        DIFF_MANIFEST_FILE_NAME);
                 String currentPackageFolderPath = getCurrentPackageFolderPath();
-                HotLoadUpdateUtils.copyNecessaryFilesFromCurrentPackage(diffManifestFilePath, currentPackageFolderPath, newUpdateFolderPath);
+                phaseStartTime = System.nanoTime();
+                try {
+                    int patchedFileCount = HotLoadUpdateUtils.applyPatchesFromCurrentPackage(diffManifestFilePath, currentPackageFolderPath, stagedUpdateFolderPath, updateContentsManifest);
+                    isPatchedUpdate = patchedFileCount > 0;
+                    updateTimings.record("patch", phaseStartTime, -1, patchedFileCount);
+                } catch (HotLoadInvalidUpdateException e) {
+                    return downloadFullPackageInstead(updatePackage, expectedBundleFileName, progressCallback, updateTimings, e);
+                }
+
+                phaseStartTime = System.nanoTime();
+                HotLoadPackageIndex currentPackageIndex = HotLoadPackageIndex.read(currentPackageFolderPath);
+                int broughtOverFileCount = HotLoadUpdateUtils.copyNecessaryFilesFromCurrentPackage(diffManifestFilePath, currentPackageFolderPath, stagedUpdateFolderPath, updateContentsManifest, currentPackageIndex);
+                updateTimings.record("copyNecessaryFiles", phaseStartTime, -1, broughtOverFileCount);
                 File diffManifestFile = new File(diffManifestFilePath);
                 diffManifestFile.delete();
+                updateContentsManifest.remove(DIFF_MANIFEST_FILE_NAME);
             }
 
-            FileUtils.copyDirectoryContents(unzippedFolderPath, newUpdateFolderPath);
-            FileUtils.deleteFileAtPathSilently(unzippedFolderPath);
-
             // For zip updates, we need to find the relative path to the jsBundle and save it in the
             // metadata so that we can find and run it easily the next time.
-            String relativeBundlePath = HotLoadUpdateUtils.findJSBundleInUpdateContents(newUpdateFolderPath, expectedBundleFileName);
+            String relativeBundlePath = HotLoadUpdateUtils.findJSBundleInUpdateContents(stagedUpdateFolderPath, expectedBundleFileName);
 
             if (relativeBundlePath == null) {
                 throw new HotLoadInvalidUpdateException("Update is invalid - no files with extension .bundle, .js or .jsbundle were found in the update package.");
@@ -251,44 +778,176 @@ public class HotLoadPackage {
                 if (FileUtils.fileAtPathExists(newUpdateMetadataPath)) {
                     File metadataFileFromOldUpdate = new File(newUpdateMetadataPath);
                     metadataFileFromOldUpdate.delete();
+                    updateContentsManifest.remove(PACKAGE_FILE_NAME);
                 }
 
                 if (isDiffUpdate) {
-                    HotLoadUpdateUtils.verifyHashForDiffUpdate(newUpdateFolderPath, newUpdateHash);
-                }
+                    phaseStartTime = System.nanoTime();
+                    try {
+                        HotLoadUpdateUtils.verifyHashForDiffUpdate(updateContentsManifest, newUpdateHash);
+                    } catch (HotLoadInvalidUpdateException e) {
+                        if (!isPatchedUpdate) {
+                            throw e;
+                        }
 
-                JSONObject updatePackageJSON = HotLoadUtils.convertReadableToJsonObject(updatePackage);
-                try {
-                    updatePackageJSON.put(RELATIVE_BUNDLE_PATH_KEY, relativeBundlePath);
-                } catch (JSONException e) {
-                    throw new HotLoadUnknownException("Unable to set key " +
-                            RELATIVE_BUNDLE_PATH_KEY + " to value " + relativeBundlePath +
-                            " in update package.", e);
+                        return downloadFullPackageInstead(updatePackage, expectedBundleFileName, progressCallback, updateTimings, e);
+                    }
+
+                    updateTimings.record("verify", phaseStartTime, -1, updateContentsManifest.getFileHashes().size());
                 }
 
-                updatePackage = HotLoadUtils.convertJsonObjectToWritable(updatePackageJSON);
+                updatePackage = updatePackage.withString(RELATIVE_BUNDLE_PATH_KEY, relativeBundlePath);
             }
         } else {
-            // File is a jsbundle, move it to a folder with the packageHash as its name
-            FileUtils.moveFile(downloadFile, newUpdateFolderPath, UPDATE_BUNDLE_FILE_NAME);
+            if (!extractWhileDownloading) {
+                // File is a jsbundle, move it to a folder with the packageHash as its name
+                FileUtils.moveFile(downloadFile, stagedUpdateFolderPath, UPDATE_BUNDLE_FILE_NAME);
+            }
+
+            if (blobStore != null) {
+                File bundleFile = new File(stagedUpdateFolderPath, UPDATE_BUNDLE_FILE_NAME);
+                updateContentsManifest.put(UPDATE_BUNDLE_FILE_NAME, HotLoadUpdateUtils.computeHash(new FileInputStream(bundleFile)));
+            }
+        }
+
+        if (blobStore != null) {
+            // The metadata file is rewritten in place, so it is never shared with other packages.
+            phaseStartTime = System.nanoTime();
+            blobStore.addPackageContents(stagedUpdateFolderPath, updateContentsManifest);
+            updateTimings.record("blobStore", phaseStartTime, -1, updateContentsManifest.getFileHashes().size());
+        }
+
+        if (hasContentsManifest) {
+            // Indexed after the blob store, which may have replaced the files with shared ones. A
+            // package whose files were not hashed anyway is left without an index, and a later
+            // diff update reads the files it brings over from it instead.
+            phaseStartTime = System.nanoTime();
+            try {
+                HotLoadPackageIndex.build(stagedUpdateFolderPath, updateContentsManifest.getFileHashes()).write(stagedUpdateFolderPath);
+            } catch (IOException e) {
+                // Without an index, the next diff update reads the files it brings over instead.
+                HotLoadUtils.log("Unable to write the package index of " + newUpdateHash + ": " + e.getMessage());
+            }
+
+            updateTimings.record("index", phaseStartTime, -1, updateContentsManifest.getFileHashes().size());
         }
 
         // Save metadata to the folder.
-        HotLoadUtils.writeReadableMapToFile(updatePackage, newUpdateMetadataPath);
+        phaseStartTime = System.nanoTime();
+        updatePackage.write(newUpdateMetadataPath);
+        updateTimings.record("metadata", phaseStartTime, new File(newUpdateMetadataPath).length(), 1);
+        phaseStartTime = System.nanoTime();
+        publishStagedPackage(newUpdateHash);
+        updateTimings.record("publish", phaseStartTime, -1, -1);
+        if (newUpdateHash.equals(getCurrentPackageHash())) {
+            // The running package was downloaded again, so its cached metadata is stale.
+            resetCachedPackageInfo();
+            writeBootRecord();
+        }
+
+        return updatePackage;
+    }
+
+    // Syncs the staged package to disk in one batch and then moves it to its final location.
+    private void publishStagedPackage(String packageHash) throws IOException {
+        File stagedFolder = new File(getStagedPackageFolderPath(packageHash));
+        File packageFolder = new File(getPackageFolderPath(packageHash));
+        FileUtils.syncDirectory(stagedFolder);
+
+        File replacedFolder = null;
+        if (packageFolder.exists()) {
+            // A directory cannot be renamed over a non-empty one, so a package that is downloaded
+            // again is moved aside first. It is put back at startup if the install is interrupted.
+            replacedFolder = new File(getStagingFolderPath(), packageHash + REPLACED_PACKAGE_FOLDER_EXTENSION);
+            FileUtils.deleteDirectory(replacedFolder);
+            FileUtils.renameAtomically(packageFolder, replacedFolder);
+        }
+
+        FileUtils.renameAtomically(stagedFolder, packageFolder);
+        FileUtils.syncDirectoryEntries(new File(getHotLoadPath()));
+        if (replacedFolder != null) {
+            FileUtils.deleteDirectory(replacedFolder);
+        }
+    }
+
+    // Cleans up after an install that was interrupted. Packages only reach their final location
+    // by being renamed out of the staging folder, so unless it exists there is nothing to do.
+    private void recoverInterruptedInstall() {
+        File stagingFolder = new File(getStagingFolderPath());
+        if (!stagingFolder.exists()) {
+            return;
+        }
+
+        File[] stagedFiles = stagingFolder.listFiles();
+        if (stagedFiles != null) {
+            for (File stagedFile : stagedFiles) {
+                String fileName = stagedFile.getName();
+                if (!fileName.endsWith(REPLACED_PACKAGE_FOLDER_EXTENSION)) {
+                    continue;
+                }
+
+                String packageHash = fileName.substring(0, fileName.length() - REPLACED_PACKAGE_FOLDER_EXTENSION.length());
+                File packageFolder = new File(getPackageFolderPath(packageHash));
+                if (!packageFolder.exists()) {
+                    // The package was moved aside, but its replacement was never published.
+                    try {
+                        FileUtils.renameAtomically(stagedFile, packageFolder);
+                    } catch (IOException e) {
+                        HotLoadUtils.log("Unable to restore package " + packageHash + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        FileUtils.deleteDirectory(stagingFolder);
     }
 
+    // Replaces a diff update whose patches could not be applied with the full package, if the
+    // server offered one. Otherwise rethrows the patch failure.
+    private PackageMetadata downloadFullPackageInstead(PackageMetadata updatePackage, String expectedBundleFileName,
+                                                       DownloadProgressCallback progressCallback, UpdateTimings updateTimings,
+                                                       HotLoadInvalidUpdateException patchFailure) throws IOException {
+        String fullPackageDownloadUrl = updatePackage.getString(FULL_PACKAGE_DOWNLOAD_URL_KEY);
+        if (fullPackageDownloadUrl == null) {
+            throw patchFailure;
+        }
+
+        HotLoadUtils.log("Unable to patch the current package (" + patchFailure.getMessage() + "), downloading the full package instead.");
+        PackageMetadata fullUpdatePackage = updatePackage
+                .withString(DOWNLOAD_URL_KEY, fullPackageDownloadUrl)
+                .withString(FULL_PACKAGE_DOWNLOAD_URL_KEY, null);
+        return downloadPackage(fullUpdatePackage, expectedBundleFileName, progressCallback, updateTimings);
+    }
+
+    private static void readFileHeader(File file, byte[] header) throws IOException {
+        FileInputStream fin = null;
+        try {
+            fin = new FileInputStream(file);
+            int offset = 0;
+            int numBytesRead;
+            while (offset < header.length && (numBytesRead = fin.read(header, offset, header.length - offset)) > 0) {
+                offset += numBytesRead;
+            }
+        } finally {
+            if (fin != null) fin.close();
+        }
+    }
+
+    // The status file is replaced before any package folder is deleted, so that it never refers
+    // to a package that is gone, whenever the process dies.
     public void installPackage(ReadableMap updatePackage, boolean removePendingUpdate) {
         String packageHash = HotLoadUtils.tryGetString(updatePackage, PACKAGE_HASH_KEY);
         WritableMap info = getCurrentPackageInfo();
+        String unusedPackageFolderPath = null;
         if (removePendingUpdate) {
-            String currentPackageFolderPath = getCurrentPackageFolderPath();
-            if (currentPackageFolderPath != null) {
-                FileUtils.deleteDirectoryAtPath(currentPackageFolderPath);
+            String currentPackageHash = getCurrentPackageHash();
+            if (currentPackageHash != null && !currentPackageHash.equals(packageHash)) {
+                unusedPackageFolderPath = getPackageFolderPath(currentPackageHash);
             }
         } else {
             String previousPackageHash = getPreviousPackageHash();
             if (previousPackageHash != null && !previousPackageHash.equals(packageHash)) {
-                FileUtils.deleteDirectoryAtPath(getPackageFolderPath(previousPackageHash));
+                unusedPackageFolderPath = getPackageFolderPath(previousPackageHash);
             }
 
             info.putString(PREVIOUS_PACKAGE_KEY, HotLoadUtils.tryGetString(info, CURRENT_PACKAGE_KEY));
@@ -296,44 +955,83 @@ public class HotLoadPackage {
 
         info.putString(CURRENT_PACKAGE_KEY, packageHash);
         updateCurrentPackageInfo(info);
+        if (unusedPackageFolderPath != null) {
+            FileUtils.deleteDirectoryAtPath(unusedPackageFolderPath);
+        }
+
+        collectUnusedBlobs();
+    }
+
+    // Indexes an installed package that has no index yet, e.g. one installed from a full update
+    // whose files were not hashed while they were written, so that the first diff update on top of
+    // it does not have to read every file it keeps. Returns false if there was nothing to index.
+    public boolean indexPackage(String packageHash) {
+        String packageFolderPath = getPackageFolderPath(packageHash);
+        if (!new File(packageFolderPath).isDirectory()
+                || new File(packageFolderPath, HotLoadPackageIndex.FILE_NAME).exists()) {
+            return false;
+        }
+
+        try {
+            HotLoadPackageIndex.hashFolder(packageFolderPath, Collections.singleton(PACKAGE_FILE_NAME))
+                    .write(packageFolderPath);
+            return true;
+        } catch (IOException e) {
+            // The next diff update hashes the files it keeps instead.
+            HotLoadUtils.log("Unable to index package " + packageHash + ": " + e.getMessage());
+            return false;
+        }
     }
 
     public void rollbackPackage() {
         WritableMap info = getCurrentPackageInfo();
         String currentPackageFolderPath = getCurrentPackageFolderPath();
-        FileUtils.deleteDirectoryAtPath(currentPackageFolderPath);
         info.putString(CURRENT_PACKAGE_KEY, HotLoadUtils.tryGetString(info, PREVIOUS_PACKAGE_KEY));
         info.putNull(PREVIOUS_PACKAGE_KEY);
         updateCurrentPackageInfo(info);
+        FileUtils.deleteDirectoryAtPath(currentPackageFolderPath);
+        collectUnusedBlobs();
+    }
+
+    // Runs whenever the store folder exists, also after the store has been disabled, so that the
+    // blobs of packages installed while it was enabled go away with those packages.
+    private void collectUnusedBlobs() {
+        File blobStoreFolder = new File(HotLoadUtils.appendPathComponent(getHotLoadPath(), BLOB_STORE_FOLDER_NAME));
+        if (!blobStoreFolder.isDirectory() || !HotLoadBlobStore.isSupported()) {
+            return;
+        }
+
+        new HotLoadBlobStore(blobStoreFolder.getAbsolutePath()).collectGarbage();
+        if (!blobStoreEnabled) {
+            // Only succeeds once the last blob is gone.
+            blobStoreFolder.delete();
+        }
     }
 
     public void downloadAndReplaceCurrentBundle(String remoteBundleUrl) throws IOException {
-        URL downloadUrl;
-        HttpURLConnection connection = null;
-        BufferedInputStream bin = null;
+        HotLoadTransport.Response response = null;
+        ReadableByteChannel source = null;
         FileOutputStream fos = null;
-        BufferedOutputStream bout = null;
         try {
-            downloadUrl = new URL(remoteBundleUrl);
-            connection = (HttpURLConnection) (downloadUrl.openConnection());
-            bin = new BufferedInputStream(connection.getInputStream());
+            response = transport.get(remoteBundleUrl, new HashMap<String, String>());
+            source = Channels.newChannel(response.getBody());
             File downloadFile = new File(getCurrentPackageBundlePath());
             downloadFile.delete();
             fos = new FileOutputStream(downloadFile);
-            bout = new BufferedOutputStream(fos, DOWNLOAD_BUFFER_SIZE);
-            byte[] data = new byte[DOWNLOAD_BUFFER_SIZE];
-            int numBytesRead = 0;
-            while ((numBytesRead = bin.read(data, 0, DOWNLOAD_BUFFER_SIZE)) >= 0) {
-                bout.write(data, 0, numBytesRead);
-            }
+            // Goes through the pooled buffer like the other downloads. FileChannel.transferFrom
+            // rejects counts above Integer.MAX_VALUE before API 24, and no progress is reported here.
+            transferToFile(source, fos.getChannel(), 0, -1, 0, new DownloadProgressCallback() {
+                @Override
+                public void call(long totalBytes, long receivedBytes) {
+                }
+            });
         } catch (MalformedURLException e) {
             throw new HotLoadMalformedDataException(remoteBundleUrl, e);
         } finally {
             try {
-                if (bout != null) bout.close();
                 if (fos != null) fos.close();
-                if (bin != null) bin.close();
-                if (connection != null) connection.disconnect();
+                if (source != null) source.close();
+                if (response != null) response.close();
             } catch (IOException e) {
                 throw new HotLoadUnknownException("Error closing IO resources.", e);
             }
@@ -344,5 +1042,22 @@ public class HotLoadPackage {
         File statusFile = new File(getStatusFilePath());
         statusFile.delete();
         FileUtils.deleteDirectoryAtPath(getHotLoadPath());
+        resetCachedPackageInfo();
+    }
+
+    // Remembers how many bytes of the package have been received, for the update timings.
+    private static class ReceivedBytesCounter implements DownloadProgressCallback {
+        private final DownloadProgressCallback delegate;
+        private volatile long receivedBytes = 0;
+
+        ReceivedBytesCounter(DownloadProgressCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void call(long totalBytes, long receivedBytes) {
+            this.receivedBytes = receivedBytes;
+            delegate.call(totalBytes, receivedBytes);
+        }
     }
 }
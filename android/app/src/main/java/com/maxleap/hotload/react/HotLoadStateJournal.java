@@ -0,0 +1,194 @@
+package com.maxleap.hotload.react;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+// Stores the update state (pending and failed updates, last deployment report) as an append-only
+// journal of small JSON records, one per line, each holding the keys changed by one transition.
+// Recording a transition appends and syncs a single line instead of rewriting a whole
+// SharedPreferences file, and the journal is compacted into a single record once it grows. A
+// record torn by a crash is ignored when the journal is replayed, leaving the previous state.
+public class HotLoadStateJournal {
+
+    private Context applicationContext;
+    private final String HOT_LOAD_PREFERENCES;
+    private final String JOURNAL_FILE_NAME = "HotLoadState.journal";
+    private final String JOURNAL_TEMP_FILE_EXTENSION = ".tmp";
+    private final int MAX_JOURNAL_RECORDS = 64;
+
+    private File journalFile;
+    private int recordCount = 0;
+    private final Map<String, String> state = new HashMap<String, String>();
+
+    public HotLoadStateJournal(Context applicationContext, String hotLoadPreferencesKey) {
+        this.applicationContext = applicationContext;
+        this.HOT_LOAD_PREFERENCES = hotLoadPreferencesKey;
+        this.journalFile = new File(applicationContext.getFilesDir(), JOURNAL_FILE_NAME);
+        replay();
+    }
+
+    public synchronized String getString(String key) {
+        return state.get(key);
+    }
+
+    // Moves a value saved in SharedPreferences by an earlier version into the journal.
+    public synchronized void importPreference(String key) {
+        SharedPreferences settings = applicationContext.getSharedPreferences(HOT_LOAD_PREFERENCES, 0);
+        if (!settings.contains(key)) {
+            return;
+        }
+
+        putString(key, settings.getString(key, null));
+        settings.edit().remove(key).commit();
+    }
+
+    public synchronized void putString(String key, String value) {
+        update(Collections.singletonMap(key, value), true);
+    }
+
+    public synchronized void remove(String key) {
+        update(Collections.<String, String>singletonMap(key, null), true);
+    }
+
+    // Records all of the changes as one transition. Null values remove their keys. Transitions
+    // that do not need to survive a power loss can skip syncing the journal to disk.
+    public synchronized void update(Map<String, String> changes, boolean sync) {
+        JSONObject record = new JSONObject();
+        try {
+            for (Map.Entry<String, String> change : changes.entrySet()) {
+                record.put(change.getKey(), change.getValue() == null ? JSONObject.NULL : change.getValue());
+            }
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to create update state record.", e);
+        }
+
+        applyRecord(record);
+        if (recordCount >= MAX_JOURNAL_RECORDS) {
+            compact();
+            return;
+        }
+
+        try {
+            writeRecords(journalFile, record.toString(), true, sync);
+            recordCount++;
+        } catch (IOException e) {
+            throw new HotLoadUnknownException("Unable to write update state journal.", e);
+        }
+    }
+
+    private void applyRecord(JSONObject record) {
+        Iterator<String> keys = record.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            String value = HotLoadUtils.tryGetString(record, key);
+            if (value == null) {
+                state.remove(key);
+            } else {
+                state.put(key, value);
+            }
+        }
+    }
+
+    private void compact() {
+        JSONObject snapshot = new JSONObject();
+        try {
+            for (Map.Entry<String, String> entry : state.entrySet()) {
+                snapshot.put(entry.getKey(), entry.getValue());
+            }
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to create update state snapshot.", e);
+        }
+
+        File tempFile = new File(journalFile.getPath() + JOURNAL_TEMP_FILE_EXTENSION);
+        try {
+            writeRecords(tempFile, snapshot.toString(), false, true);
+        } catch (IOException e) {
+            throw new HotLoadUnknownException("Unable to write update state journal.", e);
+        }
+
+        if (!tempFile.renameTo(journalFile)) {
+            throw new HotLoadUnknownException("Unable to replace update state journal " + journalFile.getPath());
+        }
+
+        recordCount = 1;
+    }
+
+    private void replay() {
+        if (!journalFile.exists()) {
+            return;
+        }
+
+        String journal;
+        FileInputStream journalStream = null;
+        try {
+            journalStream = new FileInputStream(journalFile);
+            ByteArrayOutputStream journalBytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int numBytesRead;
+            while ((numBytesRead = journalStream.read(buffer)) != -1) {
+                journalBytes.write(buffer, 0, numBytesRead);
+            }
+
+            journal = journalBytes.toString("UTF-8");
+        } catch (IOException e) {
+            throw new HotLoadUnknownException("Unable to read update state journal.", e);
+        } finally {
+            try {
+                if (journalStream != null) journalStream.close();
+            } catch (IOException e) {
+                throw new HotLoadUnknownException("Error closing IO resources.", e);
+            }
+        }
+
+        boolean isDamaged = false;
+        String[] records = journal.split("\n", -1);
+        for (int i = 0; i < records.length; i++) {
+            String record = records[i];
+            if (record.length() == 0) {
+                continue;
+            }
+
+            try {
+                applyRecord(new JSONObject(record));
+                recordCount++;
+            } catch (JSONException e) {
+                // A record that was only partially written before a crash.
+                HotLoadUtils.log("Ignoring damaged record in update state journal.");
+                isDamaged = true;
+            }
+        }
+
+        // Rewrite the journal so that new records are not appended after a torn one.
+        if (isDamaged || !journal.endsWith("\n") && journal.length() > 0) {
+            compact();
+        }
+    }
+
+    private void writeRecords(File file, String records, boolean append, boolean sync) throws IOException {
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(file, append);
+            outputStream.write((records + "\n").getBytes("UTF-8"));
+            if (sync) {
+                outputStream.getFD().sync();
+            }
+        } finally {
+            if (outputStream != null) outputStream.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.maxleap.hotload.react;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+// Keeps the status reports that JS has not delivered yet in a file of their own, so that a report
+// is not lost when the app is closed before it was sent. Queuing a report with the id of a queued
+// one replaces it, and the oldest reports are dropped once there are more than MAX_QUEUED_REPORTS
+// or they take more than MAX_QUEUE_CHARS to store.
+public class HotLoadStatusReportQueue {
+
+    private final String ID_KEY = "id";
+    private final int MAX_QUEUE_CHARS = 64 * 1024;
+    private final int MAX_QUEUED_REPORTS = 20;
+    private final String REPORT_KEY = "report";
+    private final String TIMESTAMP_KEY = "timestamp";
+
+    private final String queueFilePath;
+    private List<JSONObject> queuedReports;
+
+    public HotLoadStatusReportQueue(String queueFilePath) {
+        this.queueFilePath = queueFilePath;
+    }
+
+    public synchronized void add(String reportId, JSONObject report) {
+        load();
+        JSONObject queuedReport = new JSONObject();
+        try {
+            queuedReport.put(ID_KEY, reportId);
+            queuedReport.put(TIMESTAMP_KEY, System.currentTimeMillis());
+            queuedReport.put(REPORT_KEY, report);
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to queue status report " + reportId, e);
+        }
+
+        removeReport(reportId);
+        queuedReports.add(queuedReport);
+        trim();
+        save();
+    }
+
+    // Returns up to maxCount of the oldest reports, each with its id, timestamp and report. They
+    // stay queued until they are removed.
+    public synchronized JSONArray peek(int maxCount) {
+        load();
+        JSONArray batch = new JSONArray();
+        for (int i = 0; i < queuedReports.size() && i < maxCount; i++) {
+            batch.put(queuedReports.get(i));
+        }
+
+        return batch;
+    }
+
+    public synchronized void remove(Collection<String> reportIds) {
+        load();
+        int queuedCount = queuedReports.size();
+        for (String reportId : reportIds) {
+            removeReport(reportId);
+        }
+
+        if (queuedReports.size() != queuedCount) {
+            save();
+        }
+    }
+
+    public synchronized int size() {
+        load();
+        return queuedReports.size();
+    }
+
+    private void load() {
+        if (queuedReports != null) {
+            return;
+        }
+
+        queuedReports = new ArrayList<JSONObject>();
+        if (!new File(queueFilePath).exists()) {
+            return;
+        }
+
+        String queueString = null;
+        try {
+            queueString = FileUtils.readFileToString(queueFilePath);
+            JSONArray reports = new JSONArray(queueString);
+            for (int i = 0; i < reports.length(); i++) {
+                JSONObject queuedReport = reports.optJSONObject(i);
+                if (queuedReport != null && queuedReport.optString(ID_KEY, null) != null) {
+                    queuedReports.add(queuedReport);
+                }
+            }
+        } catch (IOException e) {
+            HotLoadUtils.log("Unable to read status report queue " + queueFilePath);
+        } catch (JSONException e) {
+            // Unrecognized data format, replace with expected format.
+            HotLoadUtils.log("Unable to parse status report queue " + queueString);
+        }
+    }
+
+    private void removeReport(String reportId) {
+        Iterator<JSONObject> it = queuedReports.iterator();
+        while (it.hasNext()) {
+            if (reportId.equals(it.next().optString(ID_KEY, null))) {
+                it.remove();
+            }
+        }
+    }
+
+    private void save() {
+        JSONArray reports = new JSONArray();
+        for (JSONObject queuedReport : queuedReports) {
+            reports.put(queuedReport);
+        }
+
+        try {
+            FileUtils.writeStringToFileAtomically(reports.toString(), queueFilePath);
+        } catch (IOException e) {
+            // The reports stay queued in memory and are written again with the next change.
+            HotLoadUtils.log("Unable to save status report queue " + queueFilePath + ": " + e.getMessage());
+        }
+    }
+
+    private void trim() {
+        int queueChars = 0;
+        for (JSONObject queuedReport : queuedReports) {
+            queueChars += queuedReport.toString().length();
+        }
+
+        while (!queuedReports.isEmpty()
+                && (queuedReports.size() > MAX_QUEUED_REPORTS || queueChars > MAX_QUEUE_CHARS)) {
+            JSONObject droppedReport = queuedReports.remove(0);
+            queueChars -= droppedReport.toString().length();
+            HotLoadUtils.log("Dropping undelivered status report " + droppedReport.optString(ID_KEY));
+        }
+    }
+}
@@ -1,24 +1,27 @@
 package com.maxleap.hotload.react;
 
-import android.content.Context;
-import android.content.SharedPreferences;
-
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeMap;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 public class HotLoadTelemetryManager {
 
-    private Context applicationContext;
-    private final String HOT_LOAD_PREFERENCES;
+    private HotLoadStateJournal hotLoadStateJournal;
+    private HotLoadStatusReportQueue hotLoadStatusReportQueue;
     private final String DEPLOYMENT_FAILED_STATUS = "DeploymentFailed";
-    private final String DEPLOYMENT_KEY_KEY = "deploymentKey";
     private final String DEPLOYMENT_SUCCEEDED_STATUS = "DeploymentSucceeded";
-    private final String LABEL_KEY = "label";
     private final String LAST_DEPLOYMENT_REPORT_KEY = "HOT_LOAD_LAST_DEPLOYMENT_REPORT";
+    private final String TIMINGS_KEY = "timings";
 
-    public HotLoadTelemetryManager(Context applicationContext, String hotLoadPreferencesKey) {
-        this.applicationContext = applicationContext;
-        this.HOT_LOAD_PREFERENCES = hotLoadPreferencesKey;
+    public HotLoadTelemetryManager(HotLoadStateJournal hotLoadStateJournal, HotLoadStatusReportQueue hotLoadStatusReportQueue) {
+        this.hotLoadStateJournal = hotLoadStateJournal;
+        this.hotLoadStatusReportQueue = hotLoadStatusReportQueue;
+        hotLoadStateJournal.importPreference(LAST_DEPLOYMENT_REPORT_KEY);
     }
 
     public WritableMap getBinaryUpdateReport(String appVersion) {
@@ -27,7 +30,7 @@ public class HotLoadTelemetryManager {
             this.recordDeploymentStatusReported(appVersion);
             WritableNativeMap reportMap = new WritableNativeMap();
             reportMap.putString("appVersion", appVersion);
-            return reportMap;
+            return queueReport(appVersion, reportMap);
         } else if (!previousStatusReportIdentifier.equals(appVersion)) {
             this.recordDeploymentStatusReported(appVersion);
             WritableNativeMap reportMap = new WritableNativeMap();
@@ -42,47 +45,53 @@ public class HotLoadTelemetryManager {
                 reportMap.putString("appVersion", appVersion);
                 reportMap.putString("previousLabelOrAppVersion", previousStatusReportIdentifier);
             }
-            return reportMap;
+            return queueReport(appVersion, reportMap);
         }
 
         return null;
     }
 
-    public WritableMap getRollbackReport(WritableMap lastFailedPackage) {
+    // updateTimings may be null if the package's timings are not known.
+    public WritableMap getRollbackReport(PackageMetadata lastFailedPackage, UpdateTimings updateTimings) {
         WritableNativeMap reportMap = new WritableNativeMap();
-        reportMap.putMap("package", lastFailedPackage);
+        reportMap.putMap("package", lastFailedPackage.toWritableMap());
         reportMap.putString("status", DEPLOYMENT_FAILED_STATUS);
-        return reportMap;
+        putUpdateTimings(reportMap, updateTimings);
+        return queueReport(DEPLOYMENT_FAILED_STATUS + ":" + lastFailedPackage.getPackageHash(), reportMap);
     }
 
-    public WritableMap getUpdateReport(WritableMap currentPackage) {
+    // updateTimings may be null if the package's timings are not known.
+    public WritableMap getUpdateReport(PackageMetadata currentPackage, UpdateTimings updateTimings) {
         String currentPackageIdentifier = this.getPackageStatusReportIdentifier(currentPackage);
         String previousStatusReportIdentifier = this.getPreviousStatusReportIdentifier();
         if (currentPackageIdentifier != null) {
             if (previousStatusReportIdentifier == null) {
                 this.recordDeploymentStatusReported(currentPackageIdentifier);
                 WritableNativeMap reportMap = new WritableNativeMap();
-                reportMap.putMap("package", currentPackage);
+                reportMap.putMap("package", currentPackage.toWritableMap());
                 reportMap.putString("status", DEPLOYMENT_SUCCEEDED_STATUS);
-                return reportMap;
+                putUpdateTimings(reportMap, updateTimings);
+                return queueReport(DEPLOYMENT_SUCCEEDED_STATUS + ":" + currentPackageIdentifier, reportMap);
             } else if (!previousStatusReportIdentifier.equals(currentPackageIdentifier)) {
                 this.recordDeploymentStatusReported(currentPackageIdentifier);
                 if (this.isStatusReportIdentifierHotLoadLabel(previousStatusReportIdentifier)) {
                     String previousDeploymentKey = this.getDeploymentKeyFromStatusReportIdentifier(previousStatusReportIdentifier);
                     String previousLabel = this.getVersionLabelFromStatusReportIdentifier(previousStatusReportIdentifier);
                     WritableNativeMap reportMap = new WritableNativeMap();
-                    reportMap.putMap("package", currentPackage);
+                    reportMap.putMap("package", currentPackage.toWritableMap());
                     reportMap.putString("status", DEPLOYMENT_SUCCEEDED_STATUS);
                     reportMap.putString("previousDeploymentKey", previousDeploymentKey);
                     reportMap.putString("previousLabelOrAppVersion", previousLabel);
-                    return reportMap;
+                    putUpdateTimings(reportMap, updateTimings);
+                    return queueReport(DEPLOYMENT_SUCCEEDED_STATUS + ":" + currentPackageIdentifier, reportMap);
                 } else {
                     // Previous status report was with a binary app version.
                     WritableNativeMap reportMap = new WritableNativeMap();
-                    reportMap.putMap("package", currentPackage);
+                    reportMap.putMap("package", currentPackage.toWritableMap());
                     reportMap.putString("status", DEPLOYMENT_SUCCEEDED_STATUS);
                     reportMap.putString("previousLabelOrAppVersion", previousStatusReportIdentifier);
-                    return reportMap;
+                    putUpdateTimings(reportMap, updateTimings);
+                    return queueReport(DEPLOYMENT_SUCCEEDED_STATUS + ":" + currentPackageIdentifier, reportMap);
                 }
             }
         }
@@ -90,6 +99,20 @@ public class HotLoadTelemetryManager {
         return null;
     }
 
+    // Returns up to maxCount of the oldest undelivered reports as {id, timestamp, report} maps.
+    public WritableArray getQueuedReports(int maxCount) {
+        return HotLoadUtils.convertJsonArrayToWritable(hotLoadStatusReportQueue.peek(maxCount));
+    }
+
+    public void removeDeliveredReports(ReadableArray reportIds) {
+        List<String> deliveredReportIds = new ArrayList<String>(reportIds.size());
+        for (int i = 0; i < reportIds.size(); i++) {
+            deliveredReportIds.add(reportIds.getString(i));
+        }
+
+        hotLoadStatusReportQueue.remove(deliveredReportIds);
+    }
+
     private String getDeploymentKeyFromStatusReportIdentifier(String statusReportIdentifier) {
         String[] parsedIdentifier = statusReportIdentifier.split(":");
         if (parsedIdentifier.length > 0) {
@@ -99,11 +122,11 @@ public class HotLoadTelemetryManager {
         }
     }
 
-    private String getPackageStatusReportIdentifier(WritableMap updatePackage) {
+    private String getPackageStatusReportIdentifier(PackageMetadata updatePackage) {
         // Because deploymentKeys can be dynamically switched, we use a
         // combination of the deploymentKey and label as the packageIdentifier.
-        String deploymentKey = HotLoadUtils.tryGetString(updatePackage, DEPLOYMENT_KEY_KEY);
-        String label = HotLoadUtils.tryGetString(updatePackage, LABEL_KEY);
+        String deploymentKey = updatePackage.getDeploymentKey();
+        String label = updatePackage.getLabel();
         if (deploymentKey != null && label != null) {
             return deploymentKey + ":" + label;
         } else {
@@ -112,8 +135,7 @@ public class HotLoadTelemetryManager {
     }
 
     private String getPreviousStatusReportIdentifier() {
-        SharedPreferences settings = applicationContext.getSharedPreferences(HOT_LOAD_PREFERENCES, 0);
-        return settings.getString(LAST_DEPLOYMENT_REPORT_KEY, null);
+        return hotLoadStateJournal.getString(LAST_DEPLOYMENT_REPORT_KEY);
     }
 
     private String getVersionLabelFromStatusReportIdentifier(String statusReportIdentifier) {
@@ -125,12 +147,25 @@ public class HotLoadTelemetryManager {
         }
     }
 
+    private void putUpdateTimings(WritableMap reportMap, UpdateTimings updateTimings) {
+        if (updateTimings != null) {
+            reportMap.putMap(TIMINGS_KEY, updateTimings.toWritableMap());
+        }
+    }
+
     private boolean isStatusReportIdentifierHotLoadLabel(String statusReportIdentifier) {
         return statusReportIdentifier != null && statusReportIdentifier.contains(":");
     }
 
+    // Keeps the report until JS confirms that it was delivered.
+    private WritableMap queueReport(String reportId, WritableNativeMap reportMap) {
+        hotLoadStatusReportQueue.add(reportId, HotLoadUtils.convertReadableToJsonObject(reportMap));
+        return reportMap;
+    }
+
     private void recordDeploymentStatusReported(String appVersionOrPackageIdentifier) {
-        SharedPreferences settings = applicationContext.getSharedPreferences(HOT_LOAD_PREFERENCES, 0);
-        settings.edit().putString(LAST_DEPLOYMENT_REPORT_KEY, appVersionOrPackageIdentifier).commit();
+        // Losing this record only means that the same status may be reported again, so it does
+        // not need to be synced to disk.
+        hotLoadStateJournal.update(Collections.singletonMap(LAST_DEPLOYMENT_REPORT_KEY, appVersionOrPackageIdentifier), false);
     }
 }
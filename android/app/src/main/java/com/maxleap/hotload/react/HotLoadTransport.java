@@ -0,0 +1,28 @@
+package com.maxleap.hotload.react;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+// Performs the HTTP requests that download updates. HotLoadHttpTransport is used by default, and
+// apps can provide their own through HotLoad.setTransport, e.g. one backed by the OkHttp client
+// and connection pool they already use.
+public interface HotLoadTransport {
+
+    // Sends a GET request with the given headers added. A transport that negotiates compression
+    // must decode the body itself, and must not do so for requests with a Range header, whose
+    // offsets always refer to the uncompressed content.
+    Response get(String url, Map<String, String> headers) throws IOException;
+
+    interface Response extends Closeable {
+        int getStatusCode() throws IOException;
+
+        String getHeader(String name);
+
+        // The length of the body returned by getBody, or -1 if it is not known in advance.
+        long getContentLength();
+
+        InputStream getBody() throws IOException;
+    }
+}
@@ -0,0 +1,68 @@
+package com.maxleap.hotload.react;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Iterator;
+
+// Keeps the update timings of the most recent packages in the update state journal, so that they
+// are still there to be reported after the restart that applies an update.
+public class HotLoadUpdateTimings {
+
+    private HotLoadStateJournal hotLoadStateJournal;
+    private final int MAX_TIMED_PACKAGES = 10;
+    private final String UPDATE_TIMINGS_KEY = "HOT_LOAD_UPDATE_TIMINGS";
+
+    public HotLoadUpdateTimings(HotLoadStateJournal hotLoadStateJournal) {
+        this.hotLoadStateJournal = hotLoadStateJournal;
+    }
+
+    public synchronized UpdateTimings get(String packageHash) {
+        if (packageHash == null) {
+            return null;
+        }
+
+        JSONArray phases = load().optJSONArray(packageHash);
+        return phases == null ? null : new UpdateTimings(packageHash, phases);
+    }
+
+    public synchronized void save(UpdateTimings updateTimings) {
+        JSONObject timings = load();
+        // Re-insert so that the package moves to the newest position.
+        timings.remove(updateTimings.getPackageHash());
+        try {
+            timings.put(updateTimings.getPackageHash(), updateTimings.getPhases());
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to save the timings of " + updateTimings.getPackageHash(), e);
+        }
+
+        Iterator<String> oldestHashes = timings.keys();
+        int excessCount = timings.length() - MAX_TIMED_PACKAGES;
+        for (int i = 0; i < excessCount; i++) {
+            oldestHashes.next();
+            oldestHashes.remove();
+        }
+
+        // These are only diagnostics, so they do not need to be synced to disk.
+        hotLoadStateJournal.update(Collections.singletonMap(UPDATE_TIMINGS_KEY, timings.toString()), false);
+    }
+
+    private JSONObject load() {
+        String timingsString = hotLoadStateJournal.getString(UPDATE_TIMINGS_KEY);
+        if (timingsString == null) {
+            return new JSONObject();
+        }
+
+        try {
+            return new JSONObject(timingsString);
+        } catch (JSONException e) {
+            // Unrecognized data format, replace with expected format.
+            HotLoadUtils.log("Unable to parse update timings " + timingsString +
+                    " stored in the update state journal");
+            return new JSONObject();
+        }
+    }
+}
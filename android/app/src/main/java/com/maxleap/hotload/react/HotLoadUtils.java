@@ -96,11 +96,6 @@ public class HotLoadUtils {
         return map;
     }
 
-    public static WritableMap convertReadableMapToWritableMap(ReadableMap map) {
-        JSONObject mapJSON = convertReadableToJsonObject(map);
-        return convertJsonObjectToWritable(mapJSON);
-    }
-
     public static JSONArray convertReadableToJsonArray(ReadableArray arr) {
         JSONArray jsonArr = new JSONArray();
         for (int i=0; i<arr.size(); i++) {
@@ -196,11 +191,10 @@ public class HotLoadUtils {
         }
     }
 
-    public static WritableMap getWritableMapFromFile(String filePath) throws IOException {
+    public static JSONObject getJsonObjectFromFile(String filePath) throws IOException {
         String content = FileUtils.readFileToString(filePath);
         try {
-            JSONObject json = new JSONObject(content);
-            return convertJsonObjectToWritable(json);
+            return new JSONObject(content);
         } catch (JSONException jsonException) {
             throw new HotLoadMalformedDataException(filePath, jsonException);
         }
@@ -222,9 +216,7 @@ public class HotLoadUtils {
         }
     }
 
-    public static void writeReadableMapToFile(ReadableMap map, String filePath) throws IOException {
-        JSONObject json = HotLoadUtils.convertReadableToJsonObject(map);
-        String jsonString = json.toString();
-        FileUtils.writeStringToFile(jsonString, filePath);
+    public static String tryGetString(JSONObject json, String key) {
+        return json.isNull(key) ? null : json.optString(key, null);
     }
 }
@@ -0,0 +1,347 @@
+package com.maxleap.hotload.react;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The metadata of an update package, as received from JS and saved in its folder. It is read and
+// written straight from and to JSON, and only becomes a bridge map when it is handed to JS. The
+// values are kept as they came, so fields this class knows nothing about survive a round trip:
+// strings, longs, doubles, booleans, nested maps and lists, and nulls inside lists. Instances are
+// immutable, a changed copy is made with withString.
+public class PackageMetadata {
+    private final String APP_VERSION_KEY = "appVersion";
+    private final String BINARY_MODIFIED_TIME_KEY = "binaryModifiedTime";
+    private final String DEPLOYMENT_KEY_KEY = "deploymentKey";
+    private final String LABEL_KEY = "label";
+    private final String PACKAGE_HASH_KEY = "packageHash";
+
+    private final Map<String, Object> values;
+
+    private PackageMetadata(Map<String, Object> values) {
+        this.values = values;
+    }
+
+    public static PackageMetadata fromReadableMap(ReadableMap map) {
+        return new PackageMetadata(readMap(map));
+    }
+
+    public static PackageMetadata fromJson(String json) {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        try {
+            return new PackageMetadata(readObject(reader));
+        } catch (IOException e) {
+            throw new HotLoadUnknownException("Unable to parse package metadata " + json, e);
+        } catch (IllegalStateException e) {
+            throw new HotLoadUnknownException("Unable to parse package metadata " + json, e);
+        }
+    }
+
+    public static PackageMetadata read(String filePath) throws IOException {
+        JsonReader reader = null;
+        try {
+            reader = new JsonReader(new BufferedReader(new InputStreamReader(new FileInputStream(filePath), "UTF-8")));
+            return new PackageMetadata(readObject(reader));
+        } catch (IllegalStateException e) {
+            // The file is valid JSON, but not an object.
+            throw new HotLoadMalformedDataException(filePath, e);
+        } finally {
+            if (reader != null) reader.close();
+        }
+    }
+
+    public String getAppVersion() {
+        return getString(APP_VERSION_KEY);
+    }
+
+    public String getBinaryModifiedTime() {
+        return getString(BINARY_MODIFIED_TIME_KEY);
+    }
+
+    public String getDeploymentKey() {
+        return getString(DEPLOYMENT_KEY_KEY);
+    }
+
+    public String getLabel() {
+        return getString(LABEL_KEY);
+    }
+
+    public String getPackageHash() {
+        return getString(PACKAGE_HASH_KEY);
+    }
+
+    public String getString(String key) {
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+
+    // Returns a copy with key set to value, or without key if value is null.
+    public PackageMetadata withString(String key, String value) {
+        Map<String, Object> newValues = new LinkedHashMap<String, Object>(values);
+        if (value == null) {
+            newValues.remove(key);
+        } else {
+            newValues.put(key, value);
+        }
+
+        return new PackageMetadata(Collections.unmodifiableMap(newValues));
+    }
+
+    public String toJson() {
+        StringWriter stringWriter = new StringWriter();
+        try {
+            writeTo(stringWriter);
+        } catch (IOException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to serialize package metadata", e);
+        }
+
+        return stringWriter.toString();
+    }
+
+    public WritableMap toWritableMap() {
+        return toWritableMap(values);
+    }
+
+    public void write(String filePath) throws IOException {
+        Writer writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath), "UTF-8"));
+            writeTo(writer);
+        } finally {
+            if (writer != null) writer.close();
+        }
+    }
+
+    private void writeTo(Writer writer) throws IOException {
+        JsonWriter jsonWriter = new JsonWriter(writer);
+        writeValue(jsonWriter, values);
+        jsonWriter.flush();
+    }
+
+    private static List<Object> readArray(ReadableArray array) {
+        List<Object> list = new ArrayList<Object>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            switch (array.getType(i)) {
+                case Map:
+                    list.add(readMap(array.getMap(i)));
+                    break;
+                case Array:
+                    list.add(readArray(array.getArray(i)));
+                    break;
+                case String:
+                    list.add(array.getString(i));
+                    break;
+                case Number:
+                    list.add(readNumber(array.getDouble(i)));
+                    break;
+                case Boolean:
+                    list.add(array.getBoolean(i));
+                    break;
+                case Null:
+                    list.add(null);
+                    break;
+            }
+        }
+
+        return Collections.unmodifiableList(list);
+    }
+
+    private static Map<String, Object> readMap(ReadableMap map) {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        ReadableMapKeySetIterator it = map.keySetIterator();
+        while (it.hasNextKey()) {
+            String key = it.nextKey();
+            switch (map.getType(key)) {
+                case Map:
+                    values.put(key, readMap(map.getMap(key)));
+                    break;
+                case Array:
+                    values.put(key, readArray(map.getArray(key)));
+                    break;
+                case String:
+                    values.put(key, map.getString(key));
+                    break;
+                case Number:
+                    values.put(key, readNumber(map.getDouble(key)));
+                    break;
+                case Boolean:
+                    values.put(key, map.getBoolean(key));
+                    break;
+                case Null:
+                    // Like a JSONObject, a key set to null is left out.
+                    break;
+            }
+        }
+
+        return Collections.unmodifiableMap(values);
+    }
+
+    // JS only has doubles, whole numbers are kept as longs so that they are written without a fraction.
+    private static Object readNumber(double number) {
+        if (number == Math.floor(number) && !Double.isInfinite(number)) {
+            return (long) number;
+        }
+
+        return number;
+    }
+
+    private static Map<String, Object> readObject(JsonReader reader) throws IOException {
+        Map<String, Object> values = new LinkedHashMap<String, Object>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            Object value = readValue(reader);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+
+        reader.endObject();
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                List<Object> list = new ArrayList<Object>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    list.add(readValue(reader));
+                }
+
+                reader.endArray();
+                return Collections.unmodifiableList(list);
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                String number = reader.nextString();
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    return Double.parseDouble(number);
+                }
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                throw new IllegalStateException("Unexpected " + token + " in package metadata");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WritableArray toWritableArray(List<Object> list) {
+        WritableArray array = Arguments.createArray();
+        for (Object value : list) {
+            if (value instanceof Map) {
+                array.pushMap(toWritableMap((Map<String, Object>) value));
+            } else if (value instanceof List) {
+                array.pushArray(toWritableArray((List<Object>) value));
+            } else if (value instanceof String) {
+                array.pushString((String) value);
+            } else if (value instanceof Long) {
+                long number = (Long) value;
+                if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                    array.pushInt((int) number);
+                } else {
+                    array.pushDouble(number);
+                }
+            } else if (value instanceof Double) {
+                array.pushDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                array.pushBoolean((Boolean) value);
+            } else {
+                array.pushNull();
+            }
+        }
+
+        return array;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static WritableMap toWritableMap(Map<String, Object> values) {
+        WritableMap map = Arguments.createMap();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (value instanceof Map) {
+                map.putMap(key, toWritableMap((Map<String, Object>) value));
+            } else if (value instanceof List) {
+                map.putArray(key, toWritableArray((List<Object>) value));
+            } else if (value instanceof String) {
+                map.putString(key, (String) value);
+            } else if (value instanceof Long) {
+                long number = (Long) value;
+                if (number >= Integer.MIN_VALUE && number <= Integer.MAX_VALUE) {
+                    map.putInt(key, (int) number);
+                } else {
+                    map.putDouble(key, number);
+                }
+            } else if (value instanceof Double) {
+                map.putDouble(key, (Double) value);
+            } else if (value instanceof Boolean) {
+                map.putBoolean(key, (Boolean) value);
+            }
+        }
+
+        return map;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(JsonWriter writer, Object value) throws IOException {
+        if (value instanceof Map) {
+            writer.beginObject();
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) value).entrySet()) {
+                writer.name(entry.getKey());
+                writeValue(writer, entry.getValue());
+            }
+
+            writer.endObject();
+        } else if (value instanceof List) {
+            writer.beginArray();
+            for (Object item : (List<Object>) value) {
+                writeValue(writer, item);
+            }
+
+            writer.endArray();
+        } else if (value instanceof String) {
+            writer.value((String) value);
+        } else if (value instanceof Long) {
+            writer.value((long) (Long) value);
+        } else if (value instanceof Double) {
+            writer.value((double) (Double) value);
+        } else if (value instanceof Boolean) {
+            writer.value((boolean) (Boolean) value);
+        } else {
+            writer.nullValue();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.maxleap.hotload.react;
+
+// Combines the progress of the segments of a download, fetched in parallel, into the progress
+// of the whole download reported to a single callback.
+class SegmentedDownloadProgress {
+    private DownloadProgressCallback progressCallback;
+    private long totalBytes;
+    private long receivedBytes = 0;
+
+    public SegmentedDownloadProgress(long totalBytes, DownloadProgressCallback progressCallback) {
+        this.totalBytes = totalBytes;
+        this.progressCallback = progressCallback;
+    }
+
+    // Returns the callback for one segment, which reports the bytes received for that segment.
+    public DownloadProgressCallback createSegmentCallback() {
+        return new DownloadProgressCallback() {
+            private long segmentReceivedBytes = 0;
+
+            @Override
+            public void call(long segmentTotalBytes, long segmentReceivedBytes) {
+                onBytesReceived(segmentReceivedBytes - this.segmentReceivedBytes);
+                this.segmentReceivedBytes = segmentReceivedBytes;
+            }
+        };
+    }
+
+    private synchronized void onBytesReceived(long numBytesReceived) {
+        receivedBytes += numBytesReceived;
+        progressCallback.call(totalBytes, receivedBytes);
+    }
+}
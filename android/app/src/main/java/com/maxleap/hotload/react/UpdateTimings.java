@@ -0,0 +1,84 @@
+package com.maxleap.hotload.react;
+
+import com.facebook.react.bridge.WritableMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// How long each phase of downloading and installing one package took, with the bytes and files
+// it handled where the phase knows them. Phases are kept in the order they ran, so a phase can
+// appear twice, e.g. when a diff could not be patched and the full package was downloaded.
+public class UpdateTimings {
+    private final String BYTES_KEY = "bytes";
+    private final String FILES_KEY = "files";
+    private final String MILLIS_KEY = "millis";
+    private final String PACKAGE_HASH_KEY = "packageHash";
+    private final String PHASE_KEY = "phase";
+    private final String PHASES_KEY = "phases";
+    private final String TOTAL_MILLIS_KEY = "totalMillis";
+
+    private final String packageHash;
+    private final JSONArray phases;
+
+    public UpdateTimings(String packageHash) {
+        this(packageHash, new JSONArray());
+    }
+
+    UpdateTimings(String packageHash, JSONArray phases) {
+        this.packageHash = packageHash;
+        this.phases = phases;
+    }
+
+    public String getPackageHash() {
+        return packageHash;
+    }
+
+    synchronized JSONArray getPhases() {
+        return phases;
+    }
+
+    // Records a phase that started at startTime (from System.nanoTime) and ends now. Pass -1 for
+    // bytes or files when the phase does not know them.
+    public synchronized void record(String phase, long startTime, long bytes, int files) {
+        JSONObject phaseTiming = new JSONObject();
+        try {
+            phaseTiming.put(PHASE_KEY, phase);
+            phaseTiming.put(MILLIS_KEY, (System.nanoTime() - startTime) / 1000000);
+            if (bytes >= 0) {
+                phaseTiming.put(BYTES_KEY, bytes);
+            }
+
+            if (files >= 0) {
+                phaseTiming.put(FILES_KEY, files);
+            }
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to record the timing of " + phase, e);
+        }
+
+        phases.put(phaseTiming);
+    }
+
+    public synchronized WritableMap toWritableMap() {
+        JSONObject timings = new JSONObject();
+        long totalMillis = 0;
+        for (int i = 0; i < phases.length(); i++) {
+            JSONObject phaseTiming = phases.optJSONObject(i);
+            if (phaseTiming != null) {
+                totalMillis += phaseTiming.optLong(MILLIS_KEY, 0);
+            }
+        }
+
+        try {
+            timings.put(PACKAGE_HASH_KEY, packageHash);
+            timings.put(PHASES_KEY, phases);
+            timings.put(TOTAL_MILLIS_KEY, totalMillis);
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to convert the timings of " + packageHash, e);
+        }
+
+        return HotLoadUtils.convertJsonObjectToWritable(timings);
+    }
+}
@@ -0,0 +1,93 @@
+package com.maxleap.hotload.react;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Turning the contents of a diff update into a complete package: every file of the current
+// package that the diff did not change or delete is brought over and hashed. On a JVM files are
+// copied, on Android they are hard linked where the file system allows it.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DiffMaterializationBenchmark {
+
+    private static final String DIFF_MANIFEST_FILE_NAME = "hothotload.json";
+
+    @Param({"100", "1000", "10000"})
+    public int fileCount;
+
+    @Param({"4096"})
+    public int fileSize;
+
+    // The share of the current package's files that the diff replaces, and that it deletes.
+    @Param({"10"})
+    public int changedPercent;
+
+    private File workFolder;
+    private File currentPackageFolder;
+    private File diffFolder;
+    private File newPackageFolder;
+
+    @Setup(Level.Trial)
+    public void createPackages() throws IOException, JSONException {
+        workFolder = SyntheticPackages.createTempFolder("diff");
+        currentPackageFolder = new File(workFolder, "current");
+        SyntheticPackages.writePackage(currentPackageFolder, fileCount, fileSize, 1);
+
+        diffFolder = new File(workFolder, "diff");
+        Random random = new Random(2);
+        JSONArray deletedFiles = new JSONArray();
+        int changedFileCount = fileCount * changedPercent / 100;
+        for (int i = 0; i < changedFileCount; i++) {
+            SyntheticPackages.writeFile(new File(diffFolder, SyntheticPackages.getRelativePath(i)), fileSize, random);
+            deletedFiles.put(SyntheticPackages.getRelativePath(fileCount - 1 - i));
+        }
+
+        JSONObject diffManifest = new JSONObject();
+        diffManifest.put("deletedFiles", deletedFiles);
+        FileUtils.writeStringToFile(diffManifest.toString(), new File(diffFolder, DIFF_MANIFEST_FILE_NAME).getAbsolutePath());
+        newPackageFolder = new File(workFolder, "new");
+    }
+
+    @Setup(Level.Invocation)
+    public void extractDiff() throws IOException {
+        FileUtils.deleteDirectory(newPackageFolder);
+        FileUtils.copyDirectoryContents(diffFolder.getAbsolutePath(), newPackageFolder.getAbsolutePath());
+    }
+
+    @TearDown(Level.Trial)
+    public void deletePackages() {
+        FileUtils.deleteDirectory(workFolder);
+    }
+
+    @Benchmark
+    public UpdateContentsManifest copyNecessaryFiles() throws IOException {
+        UpdateContentsManifest manifest = new UpdateContentsManifest();
+        HotLoadUpdateUtils.copyNecessaryFilesFromCurrentPackage(
+                new File(newPackageFolder, DIFF_MANIFEST_FILE_NAME).getAbsolutePath(),
+                currentPackageFolder.getAbsolutePath(), newPackageFolder.getAbsolutePath(), manifest);
+        return manifest;
+    }
+}
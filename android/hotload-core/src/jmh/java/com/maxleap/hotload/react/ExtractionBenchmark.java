@@ -0,0 +1,87 @@
+package com.maxleap.hotload.react;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+// Unzipping a downloaded package: from the file with one and with several threads, and from a
+// stream while hashing every file, as streaming extraction does.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExtractionBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int fileCount;
+
+    @Param({"4096"})
+    public int fileSize;
+
+    private File workFolder;
+    private File zipFile;
+    private File destination;
+
+    @Setup(Level.Trial)
+    public void createPackage() throws IOException {
+        workFolder = SyntheticPackages.createTempFolder("extraction");
+        File packageFolder = new File(workFolder, "package");
+        SyntheticPackages.writePackage(packageFolder, fileCount, fileSize, 1);
+        zipFile = new File(workFolder, "package.zip");
+        SyntheticPackages.zipFolder(packageFolder, zipFile);
+        FileUtils.deleteDirectory(packageFolder);
+        destination = new File(workFolder, "unzipped");
+    }
+
+    @Setup(Level.Invocation)
+    public void clearDestination() {
+        FileUtils.deleteDirectory(destination);
+    }
+
+    @TearDown(Level.Trial)
+    public void deletePackage() {
+        FileUtils.deleteDirectory(workFolder);
+    }
+
+    @Benchmark
+    public void unzipFile() throws IOException {
+        FileUtils.unzipFile(zipFile, destination.getAbsolutePath(), 1);
+    }
+
+    @Benchmark
+    public void unzipFileWithFourThreads() throws IOException {
+        FileUtils.unzipFile(zipFile, destination.getAbsolutePath(), 4);
+    }
+
+    @Benchmark
+    public UpdateContentsManifest unzipStreamWithManifest() throws IOException {
+        UpdateContentsManifest manifest = new UpdateContentsManifest();
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(zipFile));
+        try {
+            FileUtils.unzipStream(inputStream, destination.getAbsolutePath(), manifest);
+        } finally {
+            inputStream.close();
+        }
+
+        return manifest;
+    }
+}
@@ -0,0 +1,85 @@
+package com.maxleap.hotload.react;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// Verifying the hash of a package, by reading every file of its folder again and from the file
+// hashes recorded while it was written, and the cost of recording them during a copy.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ManifestHashingBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int fileCount;
+
+    @Param({"4096"})
+    public int fileSize;
+
+    private File workFolder;
+    private File packageFolder;
+    private File copyFolder;
+    private UpdateContentsManifest manifest;
+    private String packageHash;
+
+    @Setup(Level.Trial)
+    public void createPackage() throws IOException {
+        workFolder = SyntheticPackages.createTempFolder("hashing");
+        packageFolder = new File(workFolder, "package");
+        SyntheticPackages.writePackage(packageFolder, fileCount, fileSize, 1);
+        copyFolder = new File(workFolder, "copy");
+        manifest = new UpdateContentsManifest();
+        FileUtils.copyDirectoryContents(packageFolder.getAbsolutePath(), copyFolder.getAbsolutePath(), manifest);
+        packageHash = HotLoadUpdateUtils.getManifestHash(manifest.getEntries());
+    }
+
+    @Setup(Level.Invocation)
+    public void clearCopy() {
+        FileUtils.deleteDirectory(copyFolder);
+    }
+
+    @TearDown(Level.Trial)
+    public void deletePackage() {
+        FileUtils.deleteDirectory(workFolder);
+    }
+
+    @Benchmark
+    public void verifyFolderHash() {
+        HotLoadUpdateUtils.verifyHashForDiffUpdate(packageFolder.getAbsolutePath(), packageHash);
+    }
+
+    @Benchmark
+    public void verifyManifestHash() {
+        HotLoadUpdateUtils.verifyHashForDiffUpdate(manifest, packageHash);
+    }
+
+    @Benchmark
+    public void copy() throws IOException {
+        FileUtils.copyDirectoryContents(packageFolder.getAbsolutePath(), copyFolder.getAbsolutePath(), null);
+    }
+
+    @Benchmark
+    public UpdateContentsManifest copyAndHash() throws IOException {
+        UpdateContentsManifest copyManifest = new UpdateContentsManifest();
+        FileUtils.copyDirectoryContents(packageFolder.getAbsolutePath(), copyFolder.getAbsolutePath(), copyManifest);
+        return copyManifest;
+    }
+}
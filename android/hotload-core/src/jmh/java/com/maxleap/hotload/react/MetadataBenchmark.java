@@ -0,0 +1,106 @@
+package com.maxleap.hotload.react;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Reading and writing the JSON files the core keeps about a package: the diff manifest and the
+// package index, whose sizes grow with the package, and small files like the boot record, which
+// are replaced atomically. The package metadata (app.json) is read and written with
+// android.util.JsonReader/JsonWriter in the app, so it is not measured here.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetadataBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int fileCount;
+
+    private File workFolder;
+    private String diffManifestPath;
+    private File packageFolder;
+    private Map<String, String> packageFileHashes;
+    private String smallFilePath;
+    private String smallFileString;
+
+    @Setup
+    public void createMetadata() throws IOException, JSONException {
+        workFolder = SyntheticPackages.createTempFolder("metadata");
+        JSONArray deletedFiles = new JSONArray();
+        JSONArray patchedFiles = new JSONArray();
+        for (int i = 0; i < fileCount / 10; i++) {
+            deletedFiles.put(SyntheticPackages.getRelativePath(i));
+            patchedFiles.put(SyntheticPackages.getRelativePath(fileCount - 1 - i));
+        }
+
+        JSONObject diffManifest = new JSONObject();
+        diffManifest.put("deletedFiles", deletedFiles);
+        diffManifest.put("patchedFiles", patchedFiles);
+        diffManifestPath = new File(workFolder, "hothotload.json").getAbsolutePath();
+        FileUtils.writeStringToFile(diffManifest.toString(), diffManifestPath);
+
+        // The index only looks at the sizes and modification times of the files, so small files
+        // with made up hashes will do.
+        packageFolder = new File(workFolder, "package");
+        SyntheticPackages.writePackage(packageFolder, fileCount, 16, 7);
+        packageFileHashes = new HashMap<>();
+        for (int i = 0; i < fileCount; i++) {
+            String relativePath = SyntheticPackages.getRelativePath(i);
+            packageFileHashes.put(relativePath, HotLoadUpdateUtils.computeHash(new ByteArrayInputStream(relativePath.getBytes())));
+        }
+
+        HotLoadPackageIndex.build(packageFolder.getAbsolutePath(), packageFileHashes).write(packageFolder.getAbsolutePath());
+
+        // Shaped like the boot record that is read on every startup.
+        smallFileString = "1\n/data/data/com.example/files/HotLoad/9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08/index.android.bundle\n1453939200000\n1.0.0";
+        smallFilePath = new File(workFolder, "boot.record").getAbsolutePath();
+        FileUtils.writeStringToFile(smallFileString, smallFilePath);
+    }
+
+    @TearDown
+    public void deleteMetadata() {
+        FileUtils.deleteDirectory(workFolder);
+    }
+
+    @Benchmark
+    public JSONObject readDiffManifest() throws IOException {
+        return HotLoadUpdateUtils.readDiffManifest(diffManifestPath);
+    }
+
+    @Benchmark
+    public HotLoadPackageIndex readPackageIndex() {
+        return HotLoadPackageIndex.read(packageFolder.getAbsolutePath());
+    }
+
+    @Benchmark
+    public void writePackageIndex() throws IOException {
+        HotLoadPackageIndex.build(packageFolder.getAbsolutePath(), packageFileHashes).write(packageFolder.getAbsolutePath());
+    }
+
+    @Benchmark
+    public void writeSmallFileAtomically() throws IOException {
+        FileUtils.writeStringToFileAtomically(smallFileString, smallFilePath);
+    }
+}
@@ -0,0 +1,85 @@
+package com.maxleap.hotload.react;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Builds the packages the benchmarks work on. Files are spread over folders of 100 like the
+// assets of a real package, and their contents are half random and half repeated text, so that
+// they compress about as well as a JS bundle and its images together.
+class SyntheticPackages {
+    static final int FILES_PER_FOLDER = 100;
+
+    static File createTempFolder(String prefix) throws IOException {
+        File folder = File.createTempFile(prefix, "");
+        folder.delete();
+        folder.mkdirs();
+        return folder;
+    }
+
+    static String getRelativePath(int fileIndex) {
+        return "assets/folder" + (fileIndex / FILES_PER_FOLDER) + "/file" + fileIndex + ".js";
+    }
+
+    static void writePackage(File folder, int fileCount, int fileSize, long seed) throws IOException {
+        Random random = new Random(seed);
+        for (int i = 0; i < fileCount; i++) {
+            writeFile(new File(folder, getRelativePath(i)), fileSize, random);
+        }
+    }
+
+    static void writeFile(File file, int fileSize, Random random) throws IOException {
+        file.getParentFile().mkdirs();
+        byte[] contents = new byte[fileSize];
+        random.nextBytes(contents);
+        byte[] text = "module.exports = require('./index');\n".getBytes("UTF-8");
+        for (int i = fileSize / 2; i < fileSize; i++) {
+            contents[i] = text[i % text.length];
+        }
+
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(contents);
+        } finally {
+            fos.close();
+        }
+    }
+
+    static void zipFolder(File folder, File zipFile) throws IOException {
+        ZipOutputStream zipStream = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            addToZip(zipStream, folder, "");
+        } finally {
+            zipStream.close();
+        }
+    }
+
+    private static void addToZip(ZipOutputStream zipStream, File folder, String pathPrefix) throws IOException {
+        byte[] buffer = new byte[1024 * 8];
+        for (File file : folder.listFiles()) {
+            String relativePath = pathPrefix + file.getName();
+            if (file.isDirectory()) {
+                zipStream.putNextEntry(new ZipEntry(relativePath + "/"));
+                zipStream.closeEntry();
+                addToZip(zipStream, file, relativePath + "/");
+            } else {
+                zipStream.putNextEntry(new ZipEntry(relativePath));
+                FileInputStream fin = new FileInputStream(file);
+                try {
+                    int numBytesRead;
+                    while ((numBytesRead = fin.read(buffer)) != -1) {
+                        zipStream.write(buffer, 0, numBytesRead);
+                    }
+                } finally {
+                    fin.close();
+                }
+
+                zipStream.closeEntry();
+            }
+        }
+    }
+}
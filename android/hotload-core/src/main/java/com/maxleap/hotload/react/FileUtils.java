@@ -0,0 +1,494 @@
+package com.maxleap.hotload.react;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+public class FileUtils {
+
+    private static final String TEMP_FILE_EXTENSION = ".tmp";
+    private static final int WRITE_BUFFER_SIZE = 1024 * 8;
+
+    private static volatile HotLoadPlatform platform = new JavaPlatform();
+
+    static void log(String message) {
+        platform.log(message);
+    }
+
+    public static void setPlatform(HotLoadPlatform platform) {
+        FileUtils.platform = platform;
+    }
+
+    public static int copyDirectoryContents(String sourceDirectoryPath, String destinationDirectoryPath) throws IOException {
+        return copyDirectoryContents(sourceDirectoryPath, destinationDirectoryPath, null);
+    }
+
+    // Copies the directory contents, recording the hash of every copied file in the manifest
+    // (if one is given) under its path relative to the destination directory. Returns the number
+    // of files copied.
+    public static int copyDirectoryContents(String sourceDirectoryPath, String destinationDirectoryPath, UpdateContentsManifest manifest) throws IOException {
+        return copyDirectoryContents(sourceDirectoryPath, destinationDirectoryPath, "", manifest);
+    }
+
+    private static int copyDirectoryContents(String sourceDirectoryPath, String destinationDirectoryPath, String pathPrefix, UpdateContentsManifest manifest) throws IOException {
+        int fileCount = 0;
+        File sourceDir = new File(sourceDirectoryPath);
+        File destDir = new File(destinationDirectoryPath);
+        if (!destDir.exists()) {
+            destDir.mkdir();
+        }
+
+        for (File sourceFile : sourceDir.listFiles()) {
+            String relativePath = (pathPrefix.isEmpty() ? "" : (pathPrefix + "/")) + sourceFile.getName();
+            if (sourceFile.isDirectory()) {
+                fileCount += copyDirectoryContents(
+                        new File(sourceDirectoryPath, sourceFile.getName()).getAbsolutePath(),
+                        new File(destinationDirectoryPath, sourceFile.getName()).getAbsolutePath(),
+                        relativePath, manifest);
+            } else if (manifest == null) {
+                copyFile(sourceFile, new File(destDir, sourceFile.getName()), null);
+                fileCount++;
+            } else {
+                MessageDigest digest = UpdateContentsManifest.createDigest();
+                copyFile(sourceFile, new File(destDir, sourceFile.getName()), digest);
+                manifest.put(relativePath, digest);
+                fileCount++;
+            }
+        }
+
+        return fileCount;
+    }
+
+    public static void copyFile(File sourceFile, File destFile) throws IOException {
+        copyFile(sourceFile, destFile, null);
+    }
+
+    // Copies the file, feeding the copied bytes into digest if one is given.
+    public static void copyFile(File sourceFile, File destFile, MessageDigest digest) throws IOException {
+        FileInputStream fromFileStream = null;
+        BufferedInputStream fromBufferedStream = null;
+        FileOutputStream destStream = null;
+        byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+        try {
+            fromFileStream = new FileInputStream(sourceFile);
+            fromBufferedStream = new BufferedInputStream(fromFileStream);
+            destStream = new FileOutputStream(destFile);
+            int bytesRead;
+            while ((bytesRead = fromBufferedStream.read(buffer)) > 0) {
+                destStream.write(buffer, 0, bytesRead);
+                if (digest != null) {
+                    digest.update(buffer, 0, bytesRead);
+                }
+            }
+        } finally {
+            try {
+                if (fromFileStream != null) fromFileStream.close();
+                if (fromBufferedStream != null) fromBufferedStream.close();
+                if (destStream != null) destStream.close();
+            } catch (IOException e) {
+                throw new HotLoadUnknownException("Error closing IO resources.", e);
+            }
+        }
+    }
+
+    public static void deleteDirectory(File directory) {
+        if (directory.exists()) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if(file.isDirectory()) {
+                        deleteDirectory(file);
+                    }
+                    else {
+                        file.delete();
+                    }
+                }
+            }
+        }
+        directory.delete();
+    }
+
+    public static void deleteDirectoryAtPath(String directoryPath) {
+        deleteDirectory(new File(directoryPath));
+    }
+
+    public static void deleteFileAtPathSilently(String path) {
+        deleteFileOrFolderSilently(new File(path));
+    }
+
+    public static void deleteFileOrFolderSilently(File file) {
+        if (file.isDirectory()) {
+            File[] files = file.listFiles();
+            for (File fileEntry : files) {
+                if (fileEntry.isDirectory()) {
+                    deleteFileOrFolderSilently(fileEntry);
+                } else {
+                    if (!file.delete()) {
+                        fileEntry.delete();
+                    }
+                }
+            }
+        }
+
+        if (!file.delete()) {
+            platform.log("Error deleting file " + file.getName());
+        }
+    }
+
+    public static boolean fileAtPathExists(String filePath) {
+        return new File(filePath).exists();
+    }
+
+    // Creates destFile as a hard link to sourceFile. Returns false if the link could not be
+    // created, in which case the caller should copy the file instead. Files linked this way share
+    // their contents, so they must be replaced rather than written to.
+    public static boolean linkFile(File sourceFile, File destFile) {
+        return platform.linkFile(sourceFile, destFile);
+    }
+
+    public static void moveFile(File fileToMove, String newFolderPath, String newFileName) {
+        File newFolder = new File(newFolderPath);
+        if (!newFolder.exists()) {
+            newFolder.mkdirs();
+        }
+
+        File newFilePath = new File(newFolderPath, newFileName);
+        if (!fileToMove.renameTo(newFilePath)) {
+            throw new HotLoadUnknownException("Unable to move file from " +
+                    fileToMove.getAbsolutePath() + " to " + newFilePath.getAbsolutePath() + ".");
+        }
+    }
+
+    // Renames the file or directory, replacing an existing file at the destination in a single
+    // atomic step. Unlike File.renameTo, failures are reported with the reason they happened.
+    public static void renameAtomically(File source, File destination) throws IOException {
+        platform.renameAtomically(source, destination);
+    }
+
+    public static String readFileToString(String filePath) throws IOException {
+        FileInputStream fin = null;
+        BufferedReader reader = null;
+        try {
+            File fl = new File(filePath);
+            fin = new FileInputStream(fl);
+            reader = new BufferedReader(new InputStreamReader(fin));
+            StringBuilder sb = new StringBuilder();
+            String line = null;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line).append("\n");
+            }
+
+            return sb.toString();
+        } finally {
+            if (reader != null) reader.close();
+            if (fin != null) fin.close();
+        }
+    }
+
+    // Flushes every file under the directory, and the directory entries themselves, to disk. This
+    // lets a whole package be written without syncing each file, and then be synced as one batch
+    // before it is published.
+    public static void syncDirectory(File directory) throws IOException {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    syncDirectory(file);
+                } else {
+                    syncFile(file);
+                }
+            }
+        }
+
+        syncDirectoryEntries(directory);
+    }
+
+    // Makes the creation, removal and renaming of the directory's entries durable.
+    public static void syncDirectoryEntries(File directory) {
+        platform.syncDirectoryEntries(directory);
+    }
+
+    public static void syncFile(File file) throws IOException {
+        // Files shared through hard links may be read-only, and fsync works on any descriptor.
+        FileInputStream fin = null;
+        try {
+            fin = new FileInputStream(file);
+            fin.getFD().sync();
+        } finally {
+            if (fin != null) fin.close();
+        }
+    }
+
+    // Returns the number of files extracted.
+    public static int unzipFile(File zipFile, String destination) throws IOException {
+        FileInputStream fileStream = null;
+        BufferedInputStream bufferedStream = null;
+        try {
+            fileStream = new FileInputStream(zipFile);
+            bufferedStream = new BufferedInputStream(fileStream);
+
+            File destinationFolder = new File(destination);
+            if (destinationFolder.exists()) {
+                deleteDirectory(destinationFolder);
+            }
+
+            return unzipStream(bufferedStream, destination);
+        } finally {
+            try {
+                if (bufferedStream != null) bufferedStream.close();
+                if (fileStream != null) fileStream.close();
+            } catch (IOException e) {
+                throw new HotLoadUnknownException("Error closing IO resources.", e);
+            }
+        }
+    }
+
+    // Extracts the zip file using threadCount workers, each inflating whole entries read through
+    // the archive's central directory. Falls back to the sequential unzipFile for a single thread.
+    // Returns the number of files extracted.
+    public static int unzipFile(File zipFile, String destination, int threadCount) throws IOException {
+        if (threadCount <= 1) {
+            return unzipFile(zipFile, destination);
+        }
+
+        long startTime = System.nanoTime();
+        final ZipFile archive = new ZipFile(zipFile);
+        ExecutorService executor = null;
+        try {
+            final File destinationFolder = new File(destination);
+            if (destinationFolder.exists()) {
+                deleteDirectory(destinationFolder);
+            }
+
+            destinationFolder.mkdirs();
+
+            // Create every directory up front so that the workers never race to create them.
+            ArrayList<ZipEntry> directoryEntries = new ArrayList<>();
+            final ArrayList<ZipEntry> fileEntries = new ArrayList<>();
+            Enumeration<? extends ZipEntry> entries = archive.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                File file = new File(destinationFolder, entry.getName());
+                if (entry.isDirectory()) {
+                    file.mkdirs();
+                    directoryEntries.add(entry);
+                } else {
+                    File parent = file.getParentFile();
+                    if (!parent.exists()) {
+                        parent.mkdirs();
+                    }
+
+                    fileEntries.add(entry);
+                }
+            }
+
+            final AtomicLong extractedBytes = new AtomicLong();
+            int workerCount = Math.min(threadCount, fileEntries.size());
+            if (workerCount > 0) {
+                executor = Executors.newFixedThreadPool(workerCount);
+                final AtomicInteger nextEntryIndex = new AtomicInteger();
+                ArrayList<Future<Void>> workers = new ArrayList<>();
+                for (int i = 0; i < workerCount; i++) {
+                    workers.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws IOException {
+                            byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+                            int entryIndex;
+                            while ((entryIndex = nextEntryIndex.getAndIncrement()) < fileEntries.size()) {
+                                ZipEntry entry = fileEntries.get(entryIndex);
+                                File file = new File(destinationFolder, entry.getName());
+                                InputStream entryStream = archive.getInputStream(entry);
+                                try {
+                                    FileOutputStream fout = new FileOutputStream(file);
+                                    try {
+                                        int numBytesRead;
+                                        while ((numBytesRead = entryStream.read(buffer)) != -1) {
+                                            fout.write(buffer, 0, numBytesRead);
+                                            extractedBytes.addAndGet(numBytesRead);
+                                        }
+                                    } finally {
+                                        fout.close();
+                                    }
+                                } finally {
+                                    entryStream.close();
+                                }
+
+                                long time = entry.getTime();
+                                if (time > 0) {
+                                    file.setLastModified(time);
+                                }
+                            }
+
+                            return null;
+                        }
+                    }));
+                }
+
+                for (Future<Void> worker : workers) {
+                    try {
+                        worker.get();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new HotLoadUnknownException("Interrupted while unzipping " + zipFile.getName() + ".", e);
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof IOException) {
+                            throw (IOException) e.getCause();
+                        }
+
+                        throw new HotLoadUnknownException("Error unzipping " + zipFile.getName() + ".", e.getCause());
+                    }
+                }
+            }
+
+            // Writing the files changes their folders' modified times, so restore those last.
+            for (ZipEntry entry : directoryEntries) {
+                long time = entry.getTime();
+                if (time > 0) {
+                    new File(destinationFolder, entry.getName()).setLastModified(time);
+                }
+            }
+
+            logUnzipThroughput(workerCount, directoryEntries.size() + fileEntries.size(), extractedBytes.get(), startTime);
+            return fileEntries.size();
+        } finally {
+            if (executor != null) executor.shutdownNow();
+            try {
+                archive.close();
+            } catch (IOException e) {
+                throw new HotLoadUnknownException("Error closing IO resources.", e);
+            }
+        }
+    }
+
+    private static void logUnzipThroughput(int threadCount, int entryCount, long byteCount, long startTime) {
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startTime) / 1000000);
+        platform.log("Unzipped " + entryCount + " entries (" + byteCount + " bytes) with " +
+                threadCount + " thread(s) in " + elapsedMillis + " ms: " +
+                (entryCount * 1000L / elapsedMillis) + " entries/s, " +
+                (byteCount * 1000L / elapsedMillis) + " bytes/s.");
+    }
+
+    public static int unzipStream(InputStream inputStream, String destination) throws IOException {
+        return unzipStream(inputStream, destination, null);
+    }
+
+    // Extracts every entry of the zip archive read from inputStream into destination, without
+    // deleting anything already in it, and records the hash of every extracted file in the
+    // manifest if one is given. The stream is not closed and is left positioned after the last
+    // local entry of the archive. Returns the number of files extracted.
+    public static int unzipStream(InputStream inputStream, String destination, UpdateContentsManifest manifest) throws IOException {
+        // Closing the zip stream releases its inflater, but must leave the caller's stream open.
+        ZipInputStream zipStream = new ZipInputStream(new FilterInputStream(inputStream) {
+            @Override
+            public void close() {
+            }
+        });
+
+        try {
+            long startTime = System.nanoTime();
+            int entryCount = 0;
+            int fileCount = 0;
+            long extractedBytes = 0;
+            ZipEntry entry;
+            File destinationFolder = new File(destination);
+            destinationFolder.mkdirs();
+
+            byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+            while ((entry = zipStream.getNextEntry()) != null) {
+                entryCount++;
+                String fileName = entry.getName();
+                File file = new File(destinationFolder, fileName);
+                if (entry.isDirectory()) {
+                    file.mkdirs();
+                } else {
+                    File parent = file.getParentFile();
+                    if (!parent.exists()) {
+                        parent.mkdirs();
+                    }
+
+                    MessageDigest digest = manifest == null ? null : UpdateContentsManifest.createDigest();
+                    FileOutputStream fout = new FileOutputStream(file);
+                    try {
+                        int numBytesRead;
+                        while ((numBytesRead = zipStream.read(buffer)) != -1) {
+                            fout.write(buffer, 0, numBytesRead);
+                            if (digest != null) {
+                                digest.update(buffer, 0, numBytesRead);
+                            }
+
+                            extractedBytes += numBytesRead;
+                        }
+                    } finally {
+                        fout.close();
+                    }
+
+                    if (manifest != null) {
+                        manifest.put(fileName, digest);
+                    }
+
+                    fileCount++;
+                }
+                long time = entry.getTime();
+                if (time > 0) {
+                    file.setLastModified(time);
+                }
+            }
+
+            logUnzipThroughput(1, entryCount, extractedBytes, startTime);
+            return fileCount;
+        } finally {
+            zipStream.close();
+        }
+    }
+
+    // Writes the content to a temporary file, syncs it and renames it over filePath, so that readers
+    // see either the old or the new content even if the process dies while writing.
+    public static void writeStringToFileAtomically(String content, String filePath) throws IOException {
+        File file = new File(filePath);
+        File tempFile = new File(filePath + TEMP_FILE_EXTENSION);
+        FileOutputStream fos = null;
+        try {
+            fos = new FileOutputStream(tempFile);
+            fos.write(content.getBytes("UTF-8"));
+            fos.getFD().sync();
+        } finally {
+            if (fos != null) fos.close();
+        }
+
+        renameAtomically(tempFile, file);
+        File parentDirectory = file.getParentFile();
+        if (parentDirectory != null) {
+            syncDirectoryEntries(parentDirectory);
+        }
+    }
+
+    public static void writeStringToFile(String content, String filePath) throws IOException {
+        PrintWriter out = null;
+        try {
+            out = new PrintWriter(filePath);
+            out.print(content);
+        } finally {
+            if (out != null) out.close();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.maxleap.hotload.react;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+// A Merkle tree over the contents of an installed package, saved in the package folder: the
+// SHA-256 hash, size and modification time of every file, and for every directory a hash over the
+// names and hashes of its children. A diff update takes the hashes of the files it brings over
+// from the index of the current package instead of reading them again, as long as a file still has
+// the size and modification time recorded for it. The root hash is checked against the file
+// hashes when the index is read, so a damaged index is ignored rather than trusted.
+class HotLoadPackageIndex {
+    static final String FILE_NAME = "hotload.index.json";
+
+    private static final String DIRECTORIES_KEY = "directories";
+    private static final String FILES_KEY = "files";
+    private static final String HASH_KEY = "hash";
+    private static final String MODIFIED_TIME_KEY = "modified";
+    private static final String ROOT_DIRECTORY = "";
+    private static final String SIZE_KEY = "size";
+
+    private static class FileEntry {
+        final String hash;
+        final long size;
+        final long modifiedTime;
+
+        FileEntry(String hash, long size, long modifiedTime) {
+            this.hash = hash;
+            this.size = size;
+            this.modifiedTime = modifiedTime;
+        }
+    }
+
+    private final Map<String, FileEntry> files;
+    private final Map<String, String> directoryHashes;
+
+    private HotLoadPackageIndex(Map<String, FileEntry> files) {
+        this.files = files;
+        this.directoryHashes = computeDirectoryHashes(files);
+    }
+
+    // Indexes the files of the package folder with the hashes recorded while it was written.
+    static HotLoadPackageIndex build(String packageFolderPath, Map<String, String> fileHashes) {
+        Map<String, FileEntry> files = new HashMap<>();
+        for (Map.Entry<String, String> fileHash : fileHashes.entrySet()) {
+            File file = new File(packageFolderPath, fileHash.getKey());
+            files.put(fileHash.getKey(), new FileEntry(fileHash.getValue(), file.length(), file.lastModified()));
+        }
+
+        return new HotLoadPackageIndex(files);
+    }
+
+    // Indexes the files of the package folder by reading them all, for packages whose files were not
+    // hashed while they were written. The index file itself and the ignored paths are left out.
+    static HotLoadPackageIndex hashFolder(String packageFolderPath, Collection<String> ignoredPaths) {
+        Map<String, String> fileHashes = new HashMap<>();
+        addFolderHashes(new File(packageFolderPath), "", ignoredPaths, fileHashes);
+        return build(packageFolderPath, fileHashes);
+    }
+
+    // Returns null if the package has no index, e.g. because it was installed by an earlier
+    // version, or if the index is damaged.
+    static HotLoadPackageIndex read(String packageFolderPath) {
+        File indexFile = new File(packageFolderPath, FILE_NAME);
+        if (!indexFile.exists()) {
+            return null;
+        }
+
+        try {
+            JSONObject index = new JSONObject(FileUtils.readFileToString(indexFile.getAbsolutePath()));
+            JSONObject fileEntries = index.getJSONObject(FILES_KEY);
+            Map<String, FileEntry> files = new HashMap<>();
+            // keys() returns a raw Iterator in the org.json version the core builds against.
+            Iterator<?> paths = fileEntries.keys();
+            while (paths.hasNext()) {
+                String path = (String) paths.next();
+                JSONObject fileEntry = fileEntries.getJSONObject(path);
+                files.put(path, new FileEntry(fileEntry.getString(HASH_KEY), fileEntry.getLong(SIZE_KEY),
+                        fileEntry.getLong(MODIFIED_TIME_KEY)));
+            }
+
+            HotLoadPackageIndex packageIndex = new HotLoadPackageIndex(files);
+            String savedRootHash = index.getJSONObject(DIRECTORIES_KEY).optString(ROOT_DIRECTORY, null);
+            if (!packageIndex.getRootHash().equals(savedRootHash)) {
+                FileUtils.log("Ignoring package index " + indexFile + " - its root hash does not match its files.");
+                return null;
+            }
+
+            return packageIndex;
+        } catch (IOException | JSONException e) {
+            FileUtils.log("Ignoring unreadable package index " + indexFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Returns the recorded hash of the file at relativePath, or null if it is not indexed or has
+    // changed since, judging by its size and modification time.
+    String getFileHash(String relativePath, File file) {
+        FileEntry fileEntry = files.get(relativePath);
+        if (fileEntry == null || fileEntry.size != file.length() || fileEntry.modifiedTime != file.lastModified()) {
+            return null;
+        }
+
+        return fileEntry.hash;
+    }
+
+    String getRootHash() {
+        return directoryHashes.get(ROOT_DIRECTORY);
+    }
+
+    void write(String packageFolderPath) throws IOException {
+        JSONObject index = new JSONObject();
+        try {
+            JSONObject fileEntries = new JSONObject();
+            for (Map.Entry<String, FileEntry> file : files.entrySet()) {
+                JSONObject fileEntry = new JSONObject();
+                fileEntry.put(HASH_KEY, file.getValue().hash);
+                fileEntry.put(SIZE_KEY, file.getValue().size);
+                fileEntry.put(MODIFIED_TIME_KEY, file.getValue().modifiedTime);
+                fileEntries.put(file.getKey(), fileEntry);
+            }
+
+            JSONObject directoryEntries = new JSONObject();
+            for (Map.Entry<String, String> directoryHash : directoryHashes.entrySet()) {
+                directoryEntries.put(directoryHash.getKey(), directoryHash.getValue());
+            }
+
+            index.put(FILES_KEY, fileEntries);
+            index.put(DIRECTORIES_KEY, directoryEntries);
+        } catch (JSONException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to create package index.", e);
+        }
+
+        FileUtils.writeStringToFileAtomically(index.toString(), new File(packageFolderPath, FILE_NAME).getAbsolutePath());
+    }
+
+    // A directory's hash covers the sorted "name:hash" lines of its children, with a trailing "/"
+    // on the names of subdirectories, so it changes whenever anything below it does.
+    private static Map<String, String> computeDirectoryHashes(Map<String, FileEntry> files) {
+        Map<String, TreeMap<String, String>> directoryChildren = new HashMap<>();
+        directoryChildren.put(ROOT_DIRECTORY, new TreeMap<String, String>());
+        for (Map.Entry<String, FileEntry> file : files.entrySet()) {
+            String path = file.getKey();
+            getChildren(directoryChildren, getParentPath(path)).put(getName(path), file.getValue().hash);
+        }
+
+        // Children are hashed before their parents, deepest directories first.
+        ArrayList<String> directories = new ArrayList<>(directoryChildren.keySet());
+        Collections.sort(directories, new Comparator<String>() {
+            @Override
+            public int compare(String first, String second) {
+                return getDepth(second) - getDepth(first);
+            }
+        });
+
+        Map<String, String> directoryHashes = new HashMap<>();
+        for (String directory : directories) {
+            MessageDigest digest = UpdateContentsManifest.createDigest();
+            try {
+                for (Map.Entry<String, String> child : directoryChildren.get(directory).entrySet()) {
+                    digest.update((child.getKey() + ":" + child.getValue() + "\n").getBytes("UTF-8"));
+                }
+            } catch (UnsupportedEncodingException e) {
+                // Should not happen.
+                throw new HotLoadUnknownException("Unable to compute hash of " + directory, e);
+            }
+
+            String directoryHash = UpdateContentsManifest.toHexString(digest.digest());
+            directoryHashes.put(directory, directoryHash);
+            if (!directory.equals(ROOT_DIRECTORY)) {
+                directoryChildren.get(getParentPath(directory)).put(getName(directory) + "/", directoryHash);
+            }
+        }
+
+        return directoryHashes;
+    }
+
+    private static void addFolderHashes(File folder, String pathPrefix, Collection<String> ignoredPaths, Map<String, String> fileHashes) {
+        File[] folderFiles = folder.listFiles();
+        if (folderFiles == null) {
+            return;
+        }
+
+        for (File file : folderFiles) {
+            String relativePath = (pathPrefix.isEmpty() ? "" : (pathPrefix + "/")) + file.getName();
+            if (file.isDirectory()) {
+                addFolderHashes(file, relativePath, ignoredPaths, fileHashes);
+            } else if (!relativePath.equals(FILE_NAME) && !ignoredPaths.contains(relativePath)) {
+                try {
+                    fileHashes.put(relativePath, HotLoadUpdateUtils.computeHash(new FileInputStream(file)));
+                } catch (FileNotFoundException e) {
+                    // The file was removed while the folder was read, so it is not indexed.
+                    FileUtils.log("Unable to index " + relativePath + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Returns the children of the directory, registering it and its ancestors if they are new.
+    private static TreeMap<String, String> getChildren(Map<String, TreeMap<String, String>> directoryChildren, String directory) {
+        TreeMap<String, String> children = directoryChildren.get(directory);
+        if (children == null) {
+            children = new TreeMap<>();
+            directoryChildren.put(directory, children);
+            getChildren(directoryChildren, getParentPath(directory));
+        }
+
+        return children;
+    }
+
+    private static int getDepth(String path) {
+        if (path.isEmpty()) {
+            return 0;
+        }
+
+        int depth = 1;
+        for (int i = path.indexOf('/'); i >= 0; i = path.indexOf('/', i + 1)) {
+            depth++;
+        }
+
+        return depth;
+    }
+
+    private static String getName(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private static String getParentPath(String path) {
+        int separatorIndex = path.lastIndexOf('/');
+        return separatorIndex < 0 ? ROOT_DIRECTORY : path.substring(0, separatorIndex);
+    }
+}
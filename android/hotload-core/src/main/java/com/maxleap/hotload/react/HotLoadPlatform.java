@@ -0,0 +1,22 @@
+package com.maxleap.hotload.react;
+
+import java.io.File;
+import java.io.IOException;
+
+// The file system operations and logging that need platform APIs. The Android module installs
+// its implementation with FileUtils.setPlatform, otherwise plain Java is used, e.g. when the core
+// classes are benchmarked on a JVM.
+public interface HotLoadPlatform {
+    // Returns false if the link could not be created, in which case the caller should copy the
+    // file instead.
+    boolean linkFile(File sourceFile, File destFile);
+
+    void log(String message);
+
+    // Renames the file or directory, replacing an existing file at the destination in a single
+    // atomic step.
+    void renameAtomically(File source, File destination) throws IOException;
+
+    // Makes the creation, removal and renaming of the directory's entries durable.
+    void syncDirectoryEntries(File directory);
+}
@@ -0,0 +1,212 @@
+package com.maxleap.hotload.react;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+
+public class HotLoadUpdateUtils {
+
+    private static final String PATCH_FILE_EXTENSION = ".vcdiff";
+
+    private static void addContentsOfFolderToManifest(String folderPath, String pathPrefix, ArrayList<String> manifest) {
+        File folder = new File(folderPath);
+        File[] folderFiles = folder.listFiles();
+        for (File file : folderFiles) {
+            String fullFilePath = file.getAbsolutePath();
+            String relativePath = (pathPrefix.isEmpty() ? "" : (pathPrefix + "/")) + file.getName();
+            if (file.isDirectory()) {
+                addContentsOfFolderToManifest(fullFilePath, relativePath, manifest);
+            } else {
+                try {
+                    manifest.add(relativePath + ":" + computeHash(new FileInputStream(file)));
+                } catch (FileNotFoundException e) {
+                    // Should not happen.
+                    throw new HotLoadUnknownException("Unable to compute hash of update contents.", e);
+                }
+            }
+        }
+    }
+
+    static String computeHash(InputStream dataStream) {
+        MessageDigest messageDigest = null;
+        DigestInputStream digestInputStream = null;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+            digestInputStream = new DigestInputStream(dataStream, messageDigest);
+            byte[] byteBuffer = new byte[1024 * 8];
+            while (digestInputStream.read(byteBuffer) != -1) ;
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to compute hash of update contents.", e);
+        } finally {
+            try {
+                if (digestInputStream != null) digestInputStream.close();
+                if (dataStream != null) dataStream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        byte[] hash = messageDigest.digest();
+        return UpdateContentsManifest.toHexString(hash);
+    }
+
+    public static int copyNecessaryFilesFromCurrentPackage(String diffManifestFilePath, String currentPackageFolderPath, String newPackageFolderPath) throws IOException {
+        return copyNecessaryFilesFromCurrentPackage(diffManifestFilePath, currentPackageFolderPath, newPackageFolderPath, null);
+    }
+
+    public static int copyNecessaryFilesFromCurrentPackage(String diffManifestFilePath, String currentPackageFolderPath, String newPackageFolderPath, UpdateContentsManifest manifest) throws IOException {
+        return copyNecessaryFilesFromCurrentPackage(diffManifestFilePath, currentPackageFolderPath, newPackageFolderPath, manifest, null);
+    }
+
+    // Brings over every file of the current package that the diff neither replaced nor deleted.
+    // The diff contents must already be in the new package folder: files that exist there are
+    // skipped, and the rest are hard linked (or copied, where linking is not supported) so that
+    // unchanged files cost no I/O. Hashes of the brought over files are recorded in the manifest
+    // if one is given, taking the hashes of linked files from the current package's index where it
+    // still matches them. Returns the number of files brought over.
+    static int copyNecessaryFilesFromCurrentPackage(String diffManifestFilePath, String currentPackageFolderPath, String newPackageFolderPath, UpdateContentsManifest manifest, HotLoadPackageIndex currentPackageIndex) throws IOException {
+        JSONArray deletedFiles = readDiffManifest(diffManifestFilePath).optJSONArray("deletedFiles");
+        HashSet<String> deletedFilesSet = new HashSet<>();
+        for (int i = 0; deletedFiles != null && i < deletedFiles.length(); i++) {
+            deletedFilesSet.add(deletedFiles.optString(i));
+        }
+
+        // The new package gets an index of its own.
+        deletedFilesSet.add(HotLoadPackageIndex.FILE_NAME);
+        return linkNecessaryFilesInFolder(currentPackageFolderPath, newPackageFolderPath, "", deletedFilesSet, manifest, currentPackageIndex);
+    }
+
+    private static int linkNecessaryFilesInFolder(String sourceFolderPath, String destinationFolderPath, String pathPrefix, HashSet<String> deletedFiles, UpdateContentsManifest manifest, HotLoadPackageIndex sourceIndex) throws IOException {
+        int fileCount = 0;
+        File destinationFolder = new File(destinationFolderPath);
+        for (File sourceFile : new File(sourceFolderPath).listFiles()) {
+            String relativePath = (pathPrefix.isEmpty() ? "" : (pathPrefix + "/")) + sourceFile.getName();
+            File destinationFile = new File(destinationFolder, sourceFile.getName());
+            if (sourceFile.isDirectory()) {
+                fileCount += linkNecessaryFilesInFolder(sourceFile.getAbsolutePath(), destinationFile.getAbsolutePath(), relativePath, deletedFiles, manifest, sourceIndex);
+            } else if (!deletedFiles.contains(relativePath) && !destinationFile.exists()) {
+                destinationFolder.mkdirs();
+                if (FileUtils.linkFile(sourceFile, destinationFile)) {
+                    if (manifest != null) {
+                        String hash = sourceIndex == null ? null : sourceIndex.getFileHash(relativePath, sourceFile);
+                        manifest.put(relativePath, hash != null ? hash : computeHash(new FileInputStream(sourceFile)));
+                    }
+                } else {
+                    MessageDigest digest = manifest == null ? null : UpdateContentsManifest.createDigest();
+                    FileUtils.copyFile(sourceFile, destinationFile, digest);
+                    if (manifest != null) {
+                        manifest.put(relativePath, digest);
+                    }
+                }
+
+                fileCount++;
+            }
+        }
+
+        return fileCount;
+    }
+
+    // Rebuilds every file listed in the diff manifest's "patchedFiles" from the same file in the
+    // current package and the VCDIFF patch shipped next to it as "<path>.vcdiff". The patches are
+    // removed once applied. Returns the number of files patched.
+    public static int applyPatchesFromCurrentPackage(String diffManifestFilePath, String currentPackageFolderPath, String newPackageFolderPath, UpdateContentsManifest manifest) throws IOException {
+        JSONArray patchedFiles = readDiffManifest(diffManifestFilePath).optJSONArray("patchedFiles");
+        if (patchedFiles == null) {
+            return 0;
+        }
+
+        for (int i = 0; i < patchedFiles.length(); i++) {
+            String patchedFileName = patchedFiles.optString(i);
+            File sourceFile = new File(currentPackageFolderPath, patchedFileName);
+            File patchFile = new File(newPackageFolderPath, patchedFileName + PATCH_FILE_EXTENSION);
+            File targetFile = new File(newPackageFolderPath, patchedFileName);
+            if (!sourceFile.exists() || !patchFile.exists()) {
+                throw new HotLoadInvalidUpdateException("Unable to patch " + patchedFileName + " - the patch or the file to patch is missing.");
+            }
+
+            targetFile.getParentFile().mkdirs();
+            MessageDigest digest = manifest == null ? null : UpdateContentsManifest.createDigest();
+            VcdiffDecoder.decode(sourceFile, patchFile, targetFile, digest);
+            patchFile.delete();
+            if (manifest != null) {
+                manifest.put(patchedFileName, digest);
+                manifest.remove(patchedFileName + PATCH_FILE_EXTENSION);
+            }
+        }
+
+        return patchedFiles.length();
+    }
+
+    static JSONObject readDiffManifest(String diffManifestFilePath) throws IOException {
+        try {
+            return new JSONObject(FileUtils.readFileToString(diffManifestFilePath));
+        } catch (JSONException e) {
+            throw new HotLoadMalformedDataException(diffManifestFilePath, e);
+        }
+    }
+
+    public static String findJSBundleInUpdateContents(String folderPath, String expectedFileName) {
+        File folder = new File(folderPath);
+        File[] folderFiles = folder.listFiles();
+        for (File file : folderFiles) {
+            String fullFilePath = new File(folderPath, file.getName()).getAbsolutePath();
+            if (file.isDirectory()) {
+                String mainBundlePathInSubFolder = findJSBundleInUpdateContents(fullFilePath, expectedFileName);
+                if (mainBundlePathInSubFolder != null) {
+                    return new File(file.getName(), mainBundlePathInSubFolder).getAbsolutePath();
+                }
+            } else {
+                String fileName = file.getName();
+                if (fileName.equals(expectedFileName)) {
+                    return fileName;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    public static void verifyHashForDiffUpdate(String folderPath, String expectedHash) {
+        ArrayList<String> updateContentsManifest = new ArrayList<>();
+        addContentsOfFolderToManifest(folderPath, "", updateContentsManifest);
+        verifyManifestHash(updateContentsManifest, expectedHash);
+    }
+
+    // Verifies the package hash from the file hashes recorded while the package was written,
+    // instead of reading every file of the package folder again.
+    public static void verifyHashForDiffUpdate(UpdateContentsManifest manifest, String expectedHash) {
+        verifyManifestHash(manifest.getEntries(), expectedHash);
+    }
+
+    private static void verifyManifestHash(ArrayList<String> updateContentsManifest, String expectedHash) {
+        if (!expectedHash.equals(getManifestHash(updateContentsManifest))) {
+            throw new HotLoadInvalidUpdateException("The update contents failed the data integrity check.");
+        }
+    }
+
+    static String getManifestHash(ArrayList<String> updateContentsManifest) {
+        Collections.sort(updateContentsManifest);
+        JSONArray updateContentsJSONArray = new JSONArray();
+        for (String manifestEntry : updateContentsManifest) {
+            updateContentsJSONArray.put(manifestEntry);
+        }
+
+        // The JSON serialization turns path separators into "\/", e.g. "HotLoad\/assets\/image.png"
+        String updateContentsManifestString = updateContentsJSONArray.toString().replace("\\/", "/");
+        return computeHash(new ByteArrayInputStream(updateContentsManifestString.getBytes()));
+    }
+}
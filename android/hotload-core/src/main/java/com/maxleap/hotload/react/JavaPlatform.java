@@ -0,0 +1,32 @@
+package com.maxleap.hotload.react;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Logger;
+
+// What plain Java can do without java.nio.file, which Android does not have before Oreo: files
+// are copied rather than linked, and directories cannot be opened to be synced.
+class JavaPlatform implements HotLoadPlatform {
+    private final Logger logger = Logger.getLogger("HotLoad");
+
+    @Override
+    public boolean linkFile(File sourceFile, File destFile) {
+        return false;
+    }
+
+    @Override
+    public void log(String message) {
+        logger.fine(message);
+    }
+
+    @Override
+    public void renameAtomically(File source, File destination) throws IOException {
+        if (!source.renameTo(destination)) {
+            throw new IOException("Unable to rename " + source.getAbsolutePath() + " to " + destination.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public void syncDirectoryEntries(File directory) {
+    }
+}
@@ -0,0 +1,51 @@
+package com.maxleap.hotload.react;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Collects the SHA-256 hash of every file written into a new package while it is being
+// extracted or copied, so that the package hash can be verified without reading it again.
+class UpdateContentsManifest {
+    private final ConcurrentHashMap<String, String> fileHashes = new ConcurrentHashMap<>();
+
+    public static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Should not happen.
+            throw new HotLoadUnknownException("Unable to compute hash of update contents.", e);
+        }
+    }
+
+    public static String toHexString(byte[] hash) {
+        return String.format("%064x", new java.math.BigInteger(1, hash));
+    }
+
+    public void put(String relativePath, MessageDigest digest) {
+        put(relativePath, toHexString(digest.digest()));
+    }
+
+    public void put(String relativePath, String hash) {
+        fileHashes.put(relativePath, hash);
+    }
+
+    public void remove(String relativePath) {
+        fileHashes.remove(relativePath);
+    }
+
+    public Map<String, String> getFileHashes() {
+        return fileHashes;
+    }
+
+    public ArrayList<String> getEntries() {
+        ArrayList<String> entries = new ArrayList<>();
+        for (Map.Entry<String, String> fileHash : fileHashes.entrySet()) {
+            entries.add(fileHash.getKey() + ":" + fileHash.getValue());
+        }
+
+        return entries;
+    }
+}
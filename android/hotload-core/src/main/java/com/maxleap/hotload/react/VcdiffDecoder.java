@@ -0,0 +1,311 @@
+package com.maxleap.hotload.react;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.zip.Adler32;
+
+// Applies delta patches in the VCDIFF format (RFC 3284) using the default code table, as
+// produced by e.g. "xdelta3 -S none". Secondary compression and custom code tables are not
+// supported. The xdelta3 application header and per-window Adler-32 checksum are understood.
+class VcdiffDecoder {
+    private static final int HDR_DECOMPRESS = 0x01;
+    private static final int HDR_CODETABLE = 0x02;
+    private static final int HDR_APPHEADER = 0x04;
+
+    private static final int WIN_SOURCE = 0x01;
+    private static final int WIN_TARGET = 0x02;
+    private static final int WIN_ADLER32 = 0x04;
+
+    private static final int INST_NOOP = 0;
+    private static final int INST_ADD = 1;
+    private static final int INST_RUN = 2;
+    private static final int INST_COPY = 3;
+
+    private static final int NEAR_CACHE_SIZE = 4;
+    private static final int SAME_CACHE_SIZE = 3;
+
+    // The default instruction code table, as (type1, size1, mode1, type2, size2, mode2) per code.
+    private static final byte[][] DEFAULT_CODE_TABLE = buildDefaultCodeTable();
+
+    private static byte[][] buildDefaultCodeTable() {
+        byte[][] table = new byte[256][];
+        int index = 0;
+        table[index++] = new byte[] { INST_RUN, 0, 0, INST_NOOP, 0, 0 };
+        table[index++] = new byte[] { INST_ADD, 0, 0, INST_NOOP, 0, 0 };
+        for (int size = 1; size <= 17; size++) {
+            table[index++] = new byte[] { INST_ADD, (byte) size, 0, INST_NOOP, 0, 0 };
+        }
+
+        for (int mode = 0; mode <= 8; mode++) {
+            table[index++] = new byte[] { INST_COPY, 0, (byte) mode, INST_NOOP, 0, 0 };
+            for (int size = 4; size <= 18; size++) {
+                table[index++] = new byte[] { INST_COPY, (byte) size, (byte) mode, INST_NOOP, 0, 0 };
+            }
+        }
+
+        for (int mode = 0; mode <= 5; mode++) {
+            for (int addSize = 1; addSize <= 4; addSize++) {
+                for (int copySize = 4; copySize <= 6; copySize++) {
+                    table[index++] = new byte[] { INST_ADD, (byte) addSize, 0, INST_COPY, (byte) copySize, (byte) mode };
+                }
+            }
+        }
+
+        for (int mode = 6; mode <= 8; mode++) {
+            for (int addSize = 1; addSize <= 4; addSize++) {
+                table[index++] = new byte[] { INST_ADD, (byte) addSize, 0, INST_COPY, 4, (byte) mode };
+            }
+        }
+
+        for (int mode = 0; mode <= 8; mode++) {
+            table[index++] = new byte[] { INST_COPY, 4, (byte) mode, INST_ADD, 1, 0 };
+        }
+
+        return table;
+    }
+
+    // Reconstructs targetFile from sourceFile and the patch, feeding the reconstructed bytes into
+    // digest if one is given. Throws HotLoadInvalidUpdateException if the patch is malformed or
+    // does not apply to sourceFile.
+    public static void decode(File sourceFile, File patchFile, File targetFile, MessageDigest digest) throws IOException {
+        Cursor patch = new Cursor(readFile(patchFile), 0, (int) patchFile.length());
+        RandomAccessFile source = null;
+        RandomAccessFile target = null;
+        try {
+            if (patch.readByte() != 0xD6 || patch.readByte() != 0xC3 || patch.readByte() != 0xC4 || patch.readByte() != 0x00) {
+                throw new HotLoadInvalidUpdateException("Patch " + patchFile.getName() + " is not in the VCDIFF format.");
+            }
+
+            int headerIndicator = patch.readByte();
+            if ((headerIndicator & (HDR_DECOMPRESS | HDR_CODETABLE)) != 0) {
+                throw new HotLoadInvalidUpdateException("Patch " + patchFile.getName() + " uses unsupported VCDIFF features.");
+            }
+
+            if ((headerIndicator & HDR_APPHEADER) != 0) {
+                patch.skip(patch.readInteger());
+            }
+
+            source = new RandomAccessFile(sourceFile, "r");
+            targetFile.delete();
+            target = new RandomAccessFile(targetFile, "rw");
+            while (patch.hasRemaining()) {
+                decodeWindow(patch, source, target, digest);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new HotLoadInvalidUpdateException("Patch " + patchFile.getName() + " is truncated or corrupted.");
+        } finally {
+            try {
+                if (source != null) source.close();
+                if (target != null) target.close();
+            } catch (IOException e) {
+                throw new HotLoadUnknownException("Error closing IO resources.", e);
+            }
+        }
+    }
+
+    private static void decodeWindow(Cursor patch, RandomAccessFile source, RandomAccessFile target, MessageDigest digest) throws IOException {
+        int windowIndicator = patch.readByte();
+        byte[] sourceSegment = new byte[0];
+        if ((windowIndicator & (WIN_SOURCE | WIN_TARGET)) != 0) {
+            int segmentLength = patch.readInteger();
+            long segmentPosition = patch.readLong();
+            RandomAccessFile segmentFile = (windowIndicator & WIN_SOURCE) != 0 ? source : target;
+            if (segmentPosition + segmentLength > segmentFile.length()) {
+                throw new HotLoadInvalidUpdateException("Patch does not match the file it is applied to.");
+            }
+
+            sourceSegment = new byte[segmentLength];
+            long targetPosition = target.getFilePointer();
+            segmentFile.seek(segmentPosition);
+            segmentFile.readFully(sourceSegment);
+            target.seek(targetPosition);
+        }
+
+        patch.readInteger(); // Length of the delta encoding.
+        byte[] window = new byte[patch.readInteger()];
+        if (patch.readByte() != 0) {
+            throw new HotLoadInvalidUpdateException("Patch uses unsupported VCDIFF compression.");
+        }
+
+        int dataLength = patch.readInteger();
+        int instructionsLength = patch.readInteger();
+        int addressesLength = patch.readInteger();
+        long expectedChecksum = -1;
+        if ((windowIndicator & WIN_ADLER32) != 0) {
+            expectedChecksum = ((long) patch.readByte() << 24) | (patch.readByte() << 16) | (patch.readByte() << 8) | patch.readByte();
+        }
+
+        Cursor data = patch.slice(dataLength);
+        Cursor instructions = patch.slice(instructionsLength);
+        Cursor addresses = patch.slice(addressesLength);
+
+        int[] nearCache = new int[NEAR_CACHE_SIZE];
+        int[] sameCache = new int[SAME_CACHE_SIZE * 256];
+        int nextNearSlot = 0;
+        int windowPosition = 0;
+        while (instructions.hasRemaining()) {
+            byte[] code = DEFAULT_CODE_TABLE[instructions.readByte()];
+            for (int i = 0; i < 6; i += 3) {
+                int type = code[i];
+                if (type == INST_NOOP) {
+                    continue;
+                }
+
+                int size = code[i + 1] == 0 ? instructions.readInteger() : code[i + 1];
+                if (windowPosition + size > window.length) {
+                    throw new HotLoadInvalidUpdateException("Patch instructions exceed the target window.");
+                }
+
+                if (type == INST_ADD) {
+                    data.read(window, windowPosition, size);
+                } else if (type == INST_RUN) {
+                    byte value = (byte) data.readByte();
+                    for (int j = 0; j < size; j++) {
+                        window[windowPosition + j] = value;
+                    }
+                } else {
+                    int here = sourceSegment.length + windowPosition;
+                    int mode = code[i + 2];
+                    int address;
+                    if (mode == 0) {
+                        address = addresses.readInteger();
+                    } else if (mode == 1) {
+                        address = here - addresses.readInteger();
+                    } else if (mode < 2 + NEAR_CACHE_SIZE) {
+                        address = nearCache[mode - 2] + addresses.readInteger();
+                    } else {
+                        address = sameCache[(mode - 2 - NEAR_CACHE_SIZE) * 256 + addresses.readByte()];
+                    }
+
+                    nearCache[nextNearSlot] = address;
+                    nextNearSlot = (nextNearSlot + 1) % NEAR_CACHE_SIZE;
+                    sameCache[address % sameCache.length] = address;
+
+                    if (address < 0 || address >= here) {
+                        throw new HotLoadInvalidUpdateException("Patch copies from an invalid address.");
+                    }
+
+                    // Copy byte by byte, since a copy from the target window may overlap itself.
+                    for (int j = 0; j < size; j++, address++) {
+                        window[windowPosition + j] = address < sourceSegment.length
+                                ? sourceSegment[address]
+                                : window[address - sourceSegment.length];
+                    }
+                }
+
+                windowPosition += size;
+            }
+        }
+
+        if (windowPosition != window.length) {
+            throw new HotLoadInvalidUpdateException("Patch did not produce the expected number of bytes.");
+        }
+
+        if (expectedChecksum >= 0) {
+            Adler32 checksum = new Adler32();
+            checksum.update(window, 0, window.length);
+            if (checksum.getValue() != expectedChecksum) {
+                throw new HotLoadInvalidUpdateException("Patch output failed its checksum.");
+            }
+        }
+
+        target.write(window);
+        if (digest != null) {
+            digest.update(window);
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] contents = new byte[(int) file.length()];
+        FileInputStream fin = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int numBytesRead;
+            while (offset < contents.length && (numBytesRead = fin.read(contents, offset, contents.length - offset)) > 0) {
+                offset += numBytesRead;
+            }
+        } finally {
+            fin.close();
+        }
+
+        return contents;
+    }
+
+    private static class Cursor {
+        private final byte[] buffer;
+        private int position;
+        private final int end;
+
+        Cursor(byte[] buffer, int position, int end) {
+            this.buffer = buffer;
+            this.position = position;
+            this.end = end;
+        }
+
+        boolean hasRemaining() {
+            return position < end;
+        }
+
+        int readByte() {
+            if (position >= end) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            return buffer[position++] & 0xFF;
+        }
+
+        void read(byte[] destination, int offset, int length) {
+            if (position + length > end) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            System.arraycopy(buffer, position, destination, offset, length);
+            position += length;
+        }
+
+        void skip(int length) {
+            if (position + length > end) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            position += length;
+        }
+
+        Cursor slice(int length) {
+            if (length < 0 || position + length > end) {
+                throw new IndexOutOfBoundsException();
+            }
+
+            Cursor slice = new Cursor(buffer, position, position + length);
+            position += length;
+            return slice;
+        }
+
+        // Reads a VCDIFF variable length integer: base 128 digits, most significant first.
+        long readLong() {
+            long value = 0;
+            int digit;
+            do {
+                digit = readByte();
+                value = (value << 7) | (digit & 0x7F);
+                if (value > Integer.MAX_VALUE * 256L) {
+                    throw new HotLoadInvalidUpdateException("Patch contains an out of range integer.");
+                }
+            } while ((digit & 0x80) != 0);
+
+            return value;
+        }
+
+        int readInteger() {
+            long value = readLong();
+            if (value > Integer.MAX_VALUE) {
+                throw new HotLoadInvalidUpdateException("Patch contains an out of range integer.");
+            }
+
+            return (int) value;
+        }
+    }
+}
@@ -28,6 +28,12 @@ declare module "rest-definitions" {
         previousLabelOrAppVersion?: string;
         label?: string;
         status?: string;
+        timings?: UpdateTimings;
+    }
+
+    /*in*/
+    export interface DeploymentStatusReportBatch {
+        reports: DeploymentStatusReport[];
     }
 
     /*in*/
@@ -51,6 +57,7 @@ declare module "rest-definitions" {
     /*out*/
     export interface UpdateCheckResponse extends PackageInfo {
         downloadURL?: string;
+        fullPackageDownloadURL?: string;
         isAvailable: boolean;
         packageSize?: number;
         shouldRunBinaryVersion?: boolean;
@@ -74,6 +81,21 @@ declare module "rest-definitions" {
         packageHash?: string;
     }
 
+    /*in*/
+    export interface UpdatePhaseTiming {
+        bytes?: number;
+        files?: number;
+        millis: number;
+        phase: string;
+    }
+
+    /*in*/
+    export interface UpdateTimings {
+        packageHash: string;
+        phases: UpdatePhaseTiming[];
+        totalMillis: number;
+    }
+
     /*out*/
     export interface UpdateMetrics {
         active: number;
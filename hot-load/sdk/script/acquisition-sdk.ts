@@ -1,6 +1,6 @@
 /// <reference path="../definitions/harness.d.ts" />
 
-import { UpdateCheckResponse, UpdateCheckRequest, DeploymentStatusReport, DownloadReport } from "rest-definitions";
+import { UpdateCheckResponse, UpdateCheckRequest, DeploymentStatusReport, DeploymentStatusReportBatch, DownloadReport, UpdateTimings } from "rest-definitions";
 
 export module Http {
     export const enum Verb {
@@ -32,6 +32,7 @@ export interface Package {
 
 export interface RemotePackage extends Package {
     downloadUrl: string;
+    fullPackageDownloadUrl?: string;
 }
 
 export interface NativeUpdateNotification {
@@ -45,6 +46,16 @@ export interface LocalPackage extends Package {
 
 export interface Callback<T> { (error: Error, parameter: T): void; }
 
+// The arguments of a reportStatusDeploy call, for reporting several deployments in one request.
+export interface DeploymentStatus {
+    deployedPackage?: Package;
+    deploymentKey?: string;    // Defaults to the deployment key of the configuration
+    previousDeploymentKey?: string;
+    previousLabelOrAppVersion?: string;
+    status?: string;
+    timings?: UpdateTimings;
+}
+
 export interface Configuration {
     appVersion: string;
     clientUniqueId: string;
@@ -147,53 +158,70 @@ export class AcquisitionManager {
                 downloadUrl: updateInfo.downloadURL
             };
 
+            if (updateInfo.fullPackageDownloadURL) {
+                // Lets the client fall back to the full package if a diff update cannot be patched.
+                remotePackage.fullPackageDownloadUrl = updateInfo.fullPackageDownloadURL;
+            }
+
             callback(/*error=*/ null, remotePackage);
         });
     }
     
-    public reportStatusDeploy(deployedPackage?: Package, status?: string, previousLabelOrAppVersion?: string, previousDeploymentKey?: string, callback?: Callback<void>): void {
-        var url: string = this._serverUrl + "reportStatus/deploy";
-        var body: DeploymentStatusReport = {
-            appVersion: this._appVersion,
-            deploymentKey: this._deploymentKey
-        };
+    public reportStatusDeploy(deployedPackage?: Package, status?: string, previousLabelOrAppVersion?: string, previousDeploymentKey?: string, callback?: Callback<void>): void;
+    public reportStatusDeploy(deployedPackage?: Package, status?: string, previousLabelOrAppVersion?: string, previousDeploymentKey?: string, timings?: UpdateTimings, callback?: Callback<void>): void;
+    public reportStatusDeploy(deployedPackage?: Package, status?: string, previousLabelOrAppVersion?: string, previousDeploymentKey?: string, timingsOrCallback?: UpdateTimings | Callback<void>, callback?: Callback<void>): void {
+        callback = typeof arguments[arguments.length - 1] === "function" && arguments[arguments.length - 1];
+        var timings: UpdateTimings = timingsOrCallback && typeof timingsOrCallback !== "function" ? <UpdateTimings>timingsOrCallback : null;
         
-        if (this._clientUniqueId) {
-            body.clientUniqueId = this._clientUniqueId;
+        var url: string = this._serverUrl + "reportStatus/deploy";
+        try {
+            var body: DeploymentStatusReport = this.createDeploymentStatusReport(deployedPackage, status, previousLabelOrAppVersion, previousDeploymentKey, timings);
+        } catch (error) {
+            if (callback) {
+                callback(error, /*not used*/ null);
+            }
+            return;
         }
         
-        if (deployedPackage) {
-            body.label = deployedPackage.label;
-            body.appVersion = deployedPackage.appVersion;
-            
-            switch (status) {
-                case AcquisitionStatus.DeploymentSucceeded:
-                case AcquisitionStatus.DeploymentFailed:
-                    body.status = status;
-                    break;
+        this._httpRequester.request(Http.Verb.POST, url, JSON.stringify(body), (error: Error, response: Http.Response): void => {
+            if (callback) {
+                if (error) {
+                    callback(error, /*not used*/ null);
+                    return;
+                }
 
-                default:
-                    if (callback) {
-                        if (!status) {
-                            callback(new Error("Missing status argument."), /*not used*/ null);
-                        } else {
-                            callback(new Error("Unrecognized status \"" + status + "\"."), /*not used*/ null);
-                        }
-                    }
+                if (response.statusCode !== 200) {
+                    callback(new Error(response.statusCode + ": " + response.body), /*not used*/ null);
                     return;
+                }
+
+                callback(/*error*/ null, /*not used*/ null);
             }
+        });
+    }
+    
+    // Reports several deployments in a single request, e.g. the ones that could not be reported
+    // when they happened.
+    public reportStatusDeployBatch(deploymentStatuses: DeploymentStatus[], callback?: Callback<void>): void {
+        var url: string = this._serverUrl + "reportStatus/deployBatch";
+        var body: DeploymentStatusReportBatch = { reports: [] };
+        try {
+            deploymentStatuses.forEach((deploymentStatus: DeploymentStatus): void => {
+                var report: DeploymentStatusReport = this.createDeploymentStatusReport(deploymentStatus.deployedPackage, deploymentStatus.status,
+                    deploymentStatus.previousLabelOrAppVersion, deploymentStatus.previousDeploymentKey, deploymentStatus.timings);
+                if (deploymentStatus.deploymentKey) {
+                    report.deploymentKey = deploymentStatus.deploymentKey;
+                }
+
+                body.reports.push(report);
+            });
+        } catch (error) {
+            if (callback) {
+                callback(error, /*not used*/ null);
+            }
+            return;
         }
         
-        if (previousLabelOrAppVersion) {
-            body.previousLabelOrAppVersion = previousLabelOrAppVersion;
-        }
-        
-        if (previousDeploymentKey) {
-            body.previousDeploymentKey = previousDeploymentKey;
-        }
-        
-        callback = typeof arguments[arguments.length - 1] === "function" && arguments[arguments.length - 1];
-        
         this._httpRequester.request(Http.Verb.POST, url, JSON.stringify(body), (error: Error, response: Http.Response): void => {
             if (callback) {
                 if (error) {
@@ -235,6 +263,51 @@ export class AcquisitionManager {
             }
         });
     }
+    
+    private createDeploymentStatusReport(deployedPackage: Package, status: string, previousLabelOrAppVersion: string, previousDeploymentKey: string, timings: UpdateTimings): DeploymentStatusReport {
+        var report: DeploymentStatusReport = {
+            appVersion: this._appVersion,
+            deploymentKey: this._deploymentKey
+        };
+        
+        if (this._clientUniqueId) {
+            report.clientUniqueId = this._clientUniqueId;
+        }
+        
+        if (deployedPackage) {
+            report.label = deployedPackage.label;
+            report.appVersion = deployedPackage.appVersion;
+            
+            switch (status) {
+                case AcquisitionStatus.DeploymentSucceeded:
+                case AcquisitionStatus.DeploymentFailed:
+                    report.status = status;
+                    break;
+
+                default:
+                    if (!status) {
+                        throw new Error("Missing status argument.");
+                    } else {
+                        throw new Error("Unrecognized status \"" + status + "\".");
+                    }
+            }
+        }
+        
+        if (previousLabelOrAppVersion) {
+            report.previousLabelOrAppVersion = previousLabelOrAppVersion;
+        }
+        
+        if (previousDeploymentKey) {
+            report.previousDeploymentKey = previousDeploymentKey;
+        }
+        
+        if (timings) {
+            // How long each phase of installing the deployed package took on the device.
+            report.timings = timings;
+        }
+        
+        return report;
+    }
 }
 
 function queryStringify(object: Object): string {
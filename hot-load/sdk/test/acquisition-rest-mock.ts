@@ -20,7 +20,10 @@ export var latestPackage = <rest.UpdateCheckResponse>{
 };
 
 export var serverUrl = "http://myurl.com";
+export var lastReportStatusDeployBody: rest.DeploymentStatusReport;
+export var lastReportStatusDeployBatchBody: rest.DeploymentStatusReportBatch;
 var reportStatusDeployUrl = serverUrl + "/reportStatus/deploy";
+var reportStatusDeployBatchUrl = serverUrl + "/reportStatus/deployBatch";
 var reportStatusDownloadUrl = serverUrl + "/reportStatus/download";
 var updateCheckUrl = serverUrl + "/updateCheck?";
 
@@ -34,6 +37,10 @@ export class HttpRequester implements acquisitionSdk.Http.Requester {
             var params = querystring.parse(url.substring(updateCheckUrl.length));
             Server.onUpdateCheck(params, callback);
         } else if (verb === acquisitionSdk.Http.Verb.POST && url === reportStatusDeployUrl) {
+            lastReportStatusDeployBody = JSON.parse(<string>requestBodyOrCallback);
+            Server.onReportStatus(callback);
+        } else if (verb === acquisitionSdk.Http.Verb.POST && url === reportStatusDeployBatchUrl) {
+            lastReportStatusDeployBatchBody = JSON.parse(<string>requestBodyOrCallback);
             Server.onReportStatus(callback);
         } else if (verb === acquisitionSdk.Http.Verb.POST && url === reportStatusDownloadUrl) {
             Server.onReportStatus(callback);
@@ -57,6 +57,19 @@ describe("Acquisition SDK", () => {
         });
     });
 
+    it("SDK forwards the full package download URL of a diff update", (done: MochaDone) => {
+        mockApi.latestPackage.fullPackageDownloadURL = "http://www.windowsazure.com/blobs/full-awperoiuqpweru";
+        var expectedUpdateResult: acquisitionSdk.RemotePackage = clone(scriptUpdateResult);
+        expectedUpdateResult.fullPackageDownloadUrl = mockApi.latestPackage.fullPackageDownloadURL;
+
+        var acquisition = new acquisitionSdk.AcquisitionManager(new mockApi.HttpRequester(), configuration);
+        acquisition.queryUpdateWithCurrentPackage(templateCurrentPackage, (error: Error, returnPackage: acquisitionSdk.RemotePackage | acquisitionSdk.NativeUpdateNotification) => {
+            assert.equal(null, error);
+            assert.deepEqual(expectedUpdateResult, returnPackage);
+            done();
+        });
+    });
+
     it("Package with equal package hash gives no update", (done: MochaDone) => {
         var equalVersionPackage: acquisitionSdk.Package = clone(templateCurrentPackage);
         equalVersionPackage.packageHash = latestPackage.packageHash;
@@ -237,6 +250,87 @@ describe("Acquisition SDK", () => {
         }));
     });
     
+    it("reportStatusDeploy(...) forwards the update timings", (done: MochaDone): void => {
+        var acquisition = new acquisitionSdk.AcquisitionManager(new mockApi.HttpRequester(), configuration);
+        var timings: rest.UpdateTimings = {
+            packageHash: templateCurrentPackage.packageHash,
+            phases: [{ phase: "download", millis: 120, bytes: 1024, files: 1 }, { phase: "install", millis: 5 }],
+            totalMillis: 125
+        };
+
+        acquisition.reportStatusDeploy(templateCurrentPackage, acquisitionSdk.AcquisitionStatus.DeploymentSucceeded, "1.5.0", mockApi.validDeploymentKey, timings, ((error: Error, parameter: void): void => {
+            if (error) {
+                throw error;
+            }
+
+            assert.deepEqual(mockApi.lastReportStatusDeployBody.timings, timings);
+            assert.equal(mockApi.lastReportStatusDeployBody.status, acquisitionSdk.AcquisitionStatus.DeploymentSucceeded);
+
+            done();
+        }));
+    });
+
+    it("reportStatusDeploy(...) leaves out timings that are not given", (done: MochaDone): void => {
+        var acquisition = new acquisitionSdk.AcquisitionManager(new mockApi.HttpRequester(), configuration);
+
+        acquisition.reportStatusDeploy(templateCurrentPackage, acquisitionSdk.AcquisitionStatus.DeploymentFailed, "1.5.0", mockApi.validDeploymentKey, ((error: Error, parameter: void): void => {
+            if (error) {
+                throw error;
+            }
+
+            assert.equal(mockApi.lastReportStatusDeployBody.timings, undefined);
+
+            done();
+        }));
+    });
+    
+    it("reportStatusDeployBatch(...) sends all the reports in one request", (done: MochaDone): void => {
+        var acquisition = new acquisitionSdk.AcquisitionManager(new mockApi.HttpRequester(), configuration);
+        var timings: rest.UpdateTimings = {
+            packageHash: templateCurrentPackage.packageHash,
+            phases: [{ phase: "download", millis: 120, bytes: 1024, files: 1 }],
+            totalMillis: 120
+        };
+        var deploymentStatuses: acquisitionSdk.DeploymentStatus[] = [
+            { deployedPackage: templateCurrentPackage, status: acquisitionSdk.AcquisitionStatus.DeploymentSucceeded, previousLabelOrAppVersion: "1.5.0", timings: timings },
+            { deploymentKey: "otherDeploymentKey", previousLabelOrAppVersion: "v1", previousDeploymentKey: mockApi.validDeploymentKey }
+        ];
+
+        acquisition.reportStatusDeployBatch(deploymentStatuses, ((error: Error, parameter: void): void => {
+            if (error) {
+                throw error;
+            }
+
+            var reports: rest.DeploymentStatusReport[] = mockApi.lastReportStatusDeployBatchBody.reports;
+            assert.equal(reports.length, 2);
+            assert.equal(reports[0].deploymentKey, configuration.deploymentKey);
+            assert.equal(reports[0].label, templateCurrentPackage.label);
+            assert.equal(reports[0].status, acquisitionSdk.AcquisitionStatus.DeploymentSucceeded);
+            assert.deepEqual(reports[0].timings, timings);
+            assert.equal(reports[1].deploymentKey, "otherDeploymentKey");
+            assert.equal(reports[1].previousLabelOrAppVersion, "v1");
+            assert.equal(reports[1].clientUniqueId, configuration.clientUniqueId);
+            assert.equal(reports[1].status, undefined);
+
+            done();
+        }));
+    });
+
+    it("reportStatusDeployBatch(...) sends nothing if a report has no status", (done: MochaDone): void => {
+        // Fails with "Unexpected request body" if the batch is sent.
+        var acquisition = new acquisitionSdk.AcquisitionManager(new mockApi.CustomResponseHttpRequester({ statusCode: 200 }), configuration);
+        var deploymentStatuses: acquisitionSdk.DeploymentStatus[] = [
+            { previousLabelOrAppVersion: "1.5.0" },
+            { deployedPackage: templateCurrentPackage }
+        ];
+
+        acquisition.reportStatusDeployBatch(deploymentStatuses, ((error: Error, parameter: void): void => {
+            assert.equal(error.message, "Missing status argument.");
+
+            done();
+        }));
+    });
+
     it("reportStatusDownload(...) signals completion", (done: MochaDone): void => {
         var acquisition = new acquisitionSdk.AcquisitionManager(new mockApi.HttpRequester(), configuration);
 
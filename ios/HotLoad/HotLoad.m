@@ -444,9 +444,11 @@ static NSString *bundleResourceName = @"main";
  * This is native-side of the RemotePackage.download method
  */
 RCT_EXPORT_METHOD(downloadUpdate:(NSDictionary*)updatePackage
+                 downloadOptions:(NSDictionary*)downloadOptions
                         resolver:(RCTPromiseResolveBlock)resolve
                         rejecter:(RCTPromiseRejectBlock)reject)
 {
+    BOOL notifyProgress = [downloadOptions[@"notifyProgress"] boolValue];
     NSDictionary *mutableUpdatePackage = [updatePackage mutableCopy];
     NSURL *binaryBundleURL = [HotLoad binaryBundleURL];
     if (binaryBundleURL != nil) {
@@ -459,6 +461,11 @@ RCT_EXPORT_METHOD(downloadUpdate:(NSDictionary*)updatePackage
         expectedBundleFileName:[bundleResourceName stringByAppendingPathExtension:bundleResourceExtension]
         // The download is progressing forward
         progressCallback:^(long long expectedContentLength, long long receivedContentLength) {
+            if (!notifyProgress) {
+                // Nothing is listening to the progress on the script-side.
+                return;
+            }
+
             dispatch_async(_methodQueue, ^{
                 // Notify the script-side about the progress
                 [self.bridge.eventDispatcher
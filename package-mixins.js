@@ -7,7 +7,7 @@ import { DeviceEventEmitter } from "react-native";
 module.exports = (NativeHotLoad) => {
   const remote = (reportStatusDownload) => {
     return {
-      async download(downloadProgressCallback) {
+      async download(downloadProgressCallback, downloadOptions = {}) {
         if (!this.downloadUrl) {
           throw new Error("Cannot download an update without a download url");
         }
@@ -24,7 +24,11 @@ module.exports = (NativeHotLoad) => {
         // Use the downloaded package info. Native code will save the package info
         // so that the client knows what the current package version is.
         try {
-          const downloadedPackage = await NativeHotLoad.downloadUpdate(this);
+          // Native code only emits progress events when something is listening to them.
+          const downloadedPackage = await NativeHotLoad.downloadUpdate(this, {
+            notifyProgress: !!downloadProgressCallback,
+            maxBytesPerSecond: downloadOptions.maxBytesPerSecond
+          });
           reportStatusDownload && reportStatusDownload(this);
           return { ...downloadedPackage, ...local };
         } finally {
@@ -18,6 +18,96 @@ interface DownloadProgress {
      * The number of bytes downloaded thus far.
      */
     receivedBytes: number;
+
+    /**
+     * The average download speed so far, in bytes per second (Android only).
+     */
+    bytesPerSecond?: number;
+
+    /**
+     * The estimated number of seconds until the download completes, when the size of
+     * the update is known (Android only).
+     */
+    estimatedSecondsRemaining?: number;
+}
+
+interface BundlePrewarmStats {
+    /**
+     * The path of the update bundle that was read ahead of the app start.
+     */
+    bundlePath: string;
+
+    /**
+     * The size of the bundle, in bytes.
+     */
+    bundleBytes: number;
+
+    /**
+     * The number of bytes of the bundle read so far.
+     */
+    prewarmedBytes: number;
+
+    /**
+     * Indicates whether the whole bundle has been read.
+     */
+    isComplete: boolean;
+
+    /**
+     * How long reading the bundle took, in milliseconds, once it has finished.
+     */
+    prewarmMillis?: number;
+
+    /**
+     * How long after prewarming started React Native began loading the bundle, in milliseconds.
+     */
+    reactStartDelayMillis?: number;
+
+    /**
+     * Indicates whether the bundle was fully read before React Native began loading it.
+     */
+    isHit?: boolean;
+}
+
+interface DownloadOptions {
+    /**
+     * Limits the download rate to this many bytes per second while the app is in the
+     * foreground (Android only). Defaults to the limit set with HotLoad.setDownloadBandwidthLimit.
+     */
+    maxBytesPerSecond?: number;
+}
+
+interface ExecutorMetrics {
+    /**
+     * The number of tasks waiting to run.
+     */
+    queueDepth: number;
+
+    /**
+     * The number of tasks that have finished running.
+     */
+    completedTasks: number;
+
+    /**
+     * The average time tasks waited in the queue before they started, in milliseconds.
+     */
+    averageWaitMillis: number;
+
+    /**
+     * The longest time a task waited in the queue before it started, in milliseconds.
+     */
+    maxWaitMillis: number;
+}
+
+interface HotLoadExecutorMetrics {
+    /**
+     * The executor that downloads and installs updates.
+     */
+    io: ExecutorMetrics;
+
+    /**
+     * The executor that reads and writes update metadata.
+     */
+    metadata: ExecutorMetrics;
 }
 
 interface LocalPackage extends Package {
@@ -89,8 +179,9 @@ interface RemotePackage extends Package {
      * Downloads the available update from the HotLoad service.
      *
      * @param downloadProgressCallback An optional callback that allows tracking the progress of the update while it is being downloaded.
+     * @param downloadOptions Optional settings for this download (e.g. a bandwidth limit).
      */
-    download(downloadProgressCallback?: DowloadProgressCallback): ReactNativePromise<LocalPackage>;
+    download(downloadProgressCallback?: DowloadProgressCallback, downloadOptions?: DownloadOptions): ReactNativePromise<LocalPackage>;
 
     /**
      * The URL at which the package is available for download.
@@ -135,6 +226,45 @@ interface SyncOptions {
     updateDialog?: UpdateDialog;
 }
 
+interface UpdatePhaseTiming {
+    /**
+     * The name of the phase (e.g. "download", "unzip", "patch", "verify" or "install").
+     */
+    phase: string;
+
+    /**
+     * How long the phase took, in milliseconds.
+     */
+    millis: number;
+
+    /**
+     * The number of bytes the phase handled, when it is known.
+     */
+    bytes?: number;
+
+    /**
+     * The number of files the phase handled, when it is known.
+     */
+    files?: number;
+}
+
+interface UpdateTimings {
+    /**
+     * The SHA hash value of the update these timings belong to.
+     */
+    packageHash: string;
+
+    /**
+     * The phases of downloading and installing the update, in the order they ran.
+     */
+    phases: UpdatePhaseTiming[];
+
+    /**
+     * The sum of the durations of all phases, in milliseconds.
+     */
+    totalMillis: number;
+}
+
 interface UpdateDialog {
     /**
      * Indicates whether you would like to append the description of an available release to the
@@ -194,11 +324,31 @@ declare namespace HotLoad {
      */
     function checkForUpdate(deploymentKey?: string): ReactNativePromise<RemotePackage>;
 
+    /**
+     * Retrieves how prewarming the update bundle into the page cache went on this app start (Android only).
+     * Resolves to null if no bundle was prewarmed or the platform does not support it.
+     */
+    function getBundlePrewarmStats(): ReactNativePromise<BundlePrewarmStats>;
+
     /**
      * Retrieves the metadata about the currently installed update (e.g. description, installation time, size).
      */
     function getCurrentPackage(): ReactNativePromise<LocalPackage>;
 
+    /**
+     * Retrieves the queue depth and wait times of the native executors that HotLoad runs its work on (Android only).
+     * Resolves to null on platforms that do not support it.
+     */
+    function getExecutorMetrics(): ReactNativePromise<HotLoadExecutorMetrics>;
+
+    /**
+     * Retrieves how long each phase of downloading and installing an update took (Android only).
+     * Resolves to null if no timings were recorded for the update.
+     *
+     * @param packageHash The SHA hash value of the update.
+     */
+    function getUpdateTimings(packageHash: string): ReactNativePromise<UpdateTimings>;
+
     /**
      * Notifies the HotLoad runtime that an installed update is considered successful.
      */
@@ -211,6 +361,14 @@ declare namespace HotLoad {
      */
     function restartApp(onlyIfUpdateIsPending?: boolean): void;
 
+    /**
+     * Limits the download rate of updates while the app is in the foreground, including the download
+     * in progress (Android only). Downloads run unthrottled while the app is in the background.
+     *
+     * @param bytesPerSecond The maximum download rate, or 0 to remove the limit.
+     */
+    function setDownloadBandwidthLimit(bytesPerSecond?: number): void;
+
     /**
      * Allows checking for an update, downloading it and installing it, all with a single call.
      *